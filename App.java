@@ -3,13 +3,61 @@ package org.app;
 
 import firebase.FirebaseConfig;
 import ui.LoginScreen;
+import util.DataManager;
+import util.LeaderboardCache;
+
+import javax.swing.SwingUtilities;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 public class App {
+    // Set by StartupBenchmark: report the first frame, then exit once startup work is done
+    public static final String EXIT_AFTER_STARTUP = "app.exitAfterStartup";
+    public static final String FIRST_FRAME_PREFIX = "first-frame-ms=";
+
     public static void main(String[] args) {
-// Initialize Firebase first
-        FirebaseConfig.initialize();
+        // Open the app UI right away
+        SwingUtilities.invokeLater(() -> {
+            LoginScreen login = new LoginScreen();
+            login.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    onFirstFrame();
+                }
+            });
+        });
+
+        // Firebase connects in the background; leaderboard traffic waits for it
+        FirebaseConfig.initializeAsync();
+
+        // Start reading the last account so signing in doesn't wait on the disk
+        DataManager.prefetchLastUser();
+        // Same for the local leaderboard copy, which the main menu and the first stats upload read
+        LeaderboardCache.preload();
+    }
+
+    private static void onFirstFrame() {
+        Instant started = ProcessHandle.current().info().startInstant().orElse(null);
+        if (started != null) {
+            System.out.println("⏱ " + FIRST_FRAME_PREFIX + Duration.between(started, Instant.now()).toMillis());
+        }
+        if (!Boolean.getBoolean(EXIT_AFTER_STARTUP)) return;
 
-        // Then open the app UI
-        new LoginScreen();
+        // Training runs for the class data sharing archive should also load what the
+        // background Firebase setup and the first login pull in, then exit normally
+        new Thread(() -> {
+            try {
+                FirebaseConfig.initializeAsync().get(10, TimeUnit.SECONDS);
+                for (String name : new String[]{"ui.MainMenu", "ui.StudyScreen", "util.DataManager", "com.google.gson.Gson"}) {
+                    Class.forName(name, false, App.class.getClassLoader());
+                }
+            } catch (Exception e) {
+                System.out.println("Startup warm-up incomplete: " + e);
+            }
+            System.exit(0);
+        }, "startup-exit").start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+//util->DataDirectoryLock
+package util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a data directory, shared by every thread in this process and
+ * every other process using the same directory (two app instances on a lab machine).
+ * Backed by an OS file lock on data/.lock plus an in-process lock, because the
+ * OS lock is held per process and cannot be taken twice from one JVM.
+ * Reentrant, so code holding it can call other code that takes it.
+ */
+public class DataDirectoryLock implements Closeable {
+    public static final String LOCK_FILE = ".lock";
+
+    private final ReentrantLock local = new ReentrantLock();
+    private final FileChannel channel;
+    private FileLock fileLock;
+
+    public DataDirectoryLock(File dir) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+        channel = FileChannel.open(new File(dir, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    // Blocks until no other thread or process holds the lock
+    public void lock() throws IOException {
+        local.lock();
+        if (local.getHoldCount() > 1) return;
+        try {
+            fileLock = channel.lock();
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
+        }
+    }
+
+    public void unlock() {
+        try {
+            // Not valid once close() has closed the channel, which releases it anyway
+            if (local.getHoldCount() == 1 && fileLock != null && fileLock.isValid()) {
+                fileLock.release();
+                fileLock = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            local.unlock();
+        }
+    }
+
+    // Waits for any thread of this process inside the lock; later lock() calls fail with ClosedChannelException
+    @Override
+    public void close() throws IOException {
+        local.lock();
+        try {
+            channel.close();
+        } finally {
+            local.unlock();
+        }
+    }
+}
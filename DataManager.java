@@ -3,38 +3,198 @@ package util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import models.Task;
 import models.User;
 
 import java.io.*;
+import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
+/**
+ * Reads and writes accounts and passwords under data/.
+ * Accounts are spread over hashed sub-directories (data/users/<shard>/<name>.json)
+ * and passwords over credential shards (data/credentials/<shard>.json), with
+ * data/users.idx listing every account; see UserIndex. A sign-up rewrites one
+ * small shard instead of every password, and a sign-in reads one shard.
+ * Data in the old flat layout (data/<name>.json plus data/users.json) is moved
+ * over automatically on first start.
+ *
+ * A save writes only what changed since the account was loaded: a one-line
+ * patch record appended to <name>.patch next to the account file. Loading
+ * replays the patches over the file, and once they add up to half the file's
+ * size the next save writes the whole account again and drops them.
+ *
+ * Account files carry a schema version (see UserSchema); older ones are upgraded
+ * as they are read and written back in the current schema on their next save.
+ * Account files are plain JSON unless -Ddata.codec picks a compressed codec
+ * (see DocumentCodecs); each file says which codec wrote it.
+ *
+ * Several app instances can share the directory: writes happen under a
+ * DataDirectoryLock, password changes re-read their shard before writing, and
+ * each account file carries a version that is checked on save. A file watcher
+ * notices changes made by other instances and drops only the affected caches.
+ */
 public class DataManager {
     private static final String USER_DIR = "data/";
-    private static final String PASSWORD_FILE = USER_DIR + "users.json";
+    private static final String ACCOUNTS_DIR = USER_DIR + "users/";
+    private static final String CREDENTIALS_DIR = USER_DIR + "credentials/";
+    private static final String LEGACY_PASSWORD_FILE = USER_DIR + "users.json"; // Before accounts were sharded
+    private static final String LAST_USER_FILE = USER_DIR + "last_user.txt";
+    private static final String DICTIONARY_DIR = USER_DIR + "dictionaries/";
+    private static final long MIN_PATCH_BYTES = 16 * 1024; // Patches below this never force a full save
+    private static final int DICTIONARY_SAMPLE = 500; // Accounts read to train a compression dictionary
+    private static final int MIN_ACCOUNTS_FOR_DICTIONARY = 20;
 
     // Add custom serializer/deserializer for LocalDate
     private static final Gson gson = new GsonBuilder()
         .setPrettyPrinting()
         .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
         .create();
+    private static final Gson compactGson = new GsonBuilder()
+        .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+        .create();
+
+    // How account files are written (-Ddata.codec); files in any codec are read
+    private static final DocumentCodec codec = DocumentCodecs.getDefault();
+
+    private static final DataDirectoryLock dirLock = openLock();
+
+    // All account and password writes go through the journal; opening it replays any interrupted writes
+    private static final WriteAheadJournal journal = openJournal();
+
+    // Last version seen on disk per account (missing = unknown, read the file)
+    private static final Map<String, Long> knownVersions = new ConcurrentHashMap<>();
 
-    private static Map<String, String> userPasswords = loadPasswordMap();
+    // Every account; opening it moves an old flat data directory to the sharded layout first
+    private static final UserIndex index = openIndex();
+
+    // Credential shards read so far (shard -> username -> password hash), so logins don't re-read them
+    private static final Map<Integer, Map<String, String>> credentialShards = new ConcurrentHashMap<>();
+
+    // Account loads started ahead of time (e.g. the last user, at startup), used once by loadUserAsync
+    private static final Map<String, CompletableFuture<User>> prefetched = new ConcurrentHashMap<>();
+
+    private static final ExecutorService background = Executors.newFixedThreadPool(4, r -> {
+        Thread thread = new Thread(r, "data-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     static {
         File dir = new File(USER_DIR);
         if (!dir.exists()) dir.mkdirs();
+
+        // Hash any passwords still stored as plaintext, without holding up startup
+        background.execute(DataManager::migratePlaintextPasswords);
+
+        // Files written by another instance may use a dictionary this one hasn't loaded yet
+        DocumentCodecs.setDictionaryLoader(id -> {
+            try {
+                return journal.read(dictionaryFile(id));
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
+        background.execute(DataManager::setUpDictionary);
+
+        // -Ddata.migrate=background upgrades every old account now instead of as each is read
+        if ("background".equals(System.getProperty("data.migrate"))) {
+            migrateAllAccounts(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        }
+
+        watchDataDirectory();
+
+        // Leave the journal empty and every file durable on a normal exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    private static DataDirectoryLock openLock() {
+        try {
+            return new DataDirectoryLock(new File(USER_DIR));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the data directory lock", e);
+        }
+    }
+
+    private static WriteAheadJournal openJournal() {
+        try {
+            return new WriteAheadJournal(new File(USER_DIR), WriteAheadJournal.Durability.fromProperty(), dirLock);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the data journal", e);
+        }
+    }
+
+    private static UserIndex openIndex() {
+        migrateFlatLayout();
+        for (int shard = 0; shard < UserIndex.SHARDS; shard++) {
+            new File(ACCOUNTS_DIR + UserIndex.shardName(shard)).mkdirs();
+        }
+        new File(CREDENTIALS_DIR).mkdirs();
+        try {
+            return new UserIndex(new File(USER_DIR), journal.getDurability() != WriteAheadJournal.Durability.NONE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the account index", e);
+        }
+    }
+
+    private static File userFile(String username) {
+        return new File(ACCOUNTS_DIR + UserIndex.shardName(UserIndex.shardOf(username)) + "/" + username + ".json");
+    }
+
+    // Changes saved since the account file was last written in full
+    private static File patchFile(String username) {
+        return new File(ACCOUNTS_DIR + UserIndex.shardName(UserIndex.shardOf(username)) + "/" + username + ".patch");
+    }
+
+    private static File credentialsFile(int shard) {
+        return new File(CREDENTIALS_DIR + UserIndex.shardName(shard) + ".json");
     }
 
     // Custom adapter for LocalDate serialization/deserialization
@@ -54,11 +214,9 @@ public class DataManager {
     }
 
     public static User loadUser(String username) {
-        File file = new File(USER_DIR + username + ".json");
-        if (!file.exists()) return null;
-
-        try (FileReader reader = new FileReader(file)) {
-            User user = gson.fromJson(reader, User.class);
+        try {
+            User user = readUser(username);
+            if (user == null) return null;
             System.out.println("Loaded user: " + username + " (XP: " + user.getXp() + ", Level: " + user.getLevel() + ", Coins: " + user.getCoins() + ")");
             return user;
         } catch (IOException e) {
@@ -67,46 +225,773 @@ public class DataManager {
         }
     }
 
+    /**
+     * Reads an account, upgrading it to the current schema in memory if it is older.
+     * An upgraded account, or one with tasks saved before task IDs existed, isn't
+     * marked as saved, so its next save writes it in full in the current schema.
+     */
+    private static User readUser(String username) throws IOException {
+        File file = userFile(username);
+        if (!journal.exists(file)) return null;
+
+        // Patches first: if another instance folds them into the file in between, the
+        // newer file already has them and they are skipped by version
+        List<JsonObject> patches = readPatches(patchFile(username));
+        JsonObject stored = readDocument(file);
+        int schema = UserSchema.schemaOf(stored);
+        JsonObject json = UserSchema.unwrap(stored);
+        applyPatches(json, patches); // Patches are in the file's schema, so they go on before upgrading
+        json = UserSchema.upgrade(json, schema);
+        User user = gson.fromJson(json, User.class);
+        // Tasks just given an ID aren't in the file under it, and a patch can't add it to them
+        if (schema == UserSchema.CURRENT && user.getChangedTasks().isEmpty()) user.markSaved();
+        knownVersions.put(username, user.getVersion());
+        return user;
+    }
+
+    // Loads the account on a background thread; completes with null if it can't be read
+    public static CompletableFuture<User> loadUserAsync(String username) {
+        CompletableFuture<User> prefetch = prefetched.remove(username);
+        return prefetch != null ? prefetch : readUserAsync(username);
+    }
+
+    private static CompletableFuture<User> readUserAsync(String username) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadUser(username);
+            } catch (RuntimeException e) { // Malformed JSON
+                e.printStackTrace();
+                return null;
+            }
+        }, background);
+    }
+
+    // Start reading an account that is likely to be needed soon
+    public static void prefetchUser(String username) {
+        if (userExists(username)) {
+            prefetched.computeIfAbsent(username, DataManager::readUserAsync);
+        }
+    }
+
+    public static void prefetchLastUser() {
+        String lastUser = getLastUser();
+        if (lastUser != null) prefetchUser(lastUser);
+    }
+
+    // Username of the last successful sign-in, or null
+    public static String getLastUser() {
+        try {
+            File file = new File(LAST_USER_FILE);
+            if (!file.exists()) return null;
+            String username = Files.readString(file.toPath(), StandardCharsets.UTF_8).trim();
+            return username.isEmpty() ? null : username;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static void setLastUser(String username) {
+        try {
+            Files.writeString(new File(LAST_USER_FILE).toPath(), username, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the account, appending just the changes when it can. If another instance
+     * saved it since this copy was loaded, a warning is printed and this copy is
+     * written in full; use updateUser for changes that must be applied on top of
+     * whatever is on disk.
+     */
     public static void saveUser(User user) {
-        try (FileWriter writer = new FileWriter(USER_DIR + user.getUsername() + ".json")) {
-            gson.toJson(user, writer);
+        String username = user.getUsername();
+        prefetched.remove(username); // A prefetched copy would now be stale
+        try {
+            if (!appendPatch(user)) {
+                writeFullUser(user);
+            }
+            user.markSaved();
             System.out.println("Saved user: " + user.getUsername() + " (XP: " + user.getXp() + ", Level: " + user.getLevel() + ", Coins: " + user.getCoins() + ")");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public static void savePassword(String username, String password) {
-        userPasswords.put(username, password);
-        savePasswordMap();
+    private static void writeFullUser(User user) throws IOException {
+        String username = user.getUsername();
+        journal.write(userFile(username), () -> {
+            // Read from disk, not knownVersions: another instance may have saved since we last looked
+            long onDisk = readVersion(username);
+            if (onDisk > user.getVersion()) {
+                System.out.println("⚠️ " + username + " was also saved by another instance (version "
+                        + onDisk + "), overwriting with this copy.");
+            }
+            user.setVersion(Math.max(onDisk, user.getVersion()) + 1);
+            // Recorded before the file changes, so the watcher recognises the write as ours
+            knownVersions.put(username, user.getVersion());
+            return encodeUser(user);
+        });
+
+        // The file now includes every patch; drop them unless another instance has added one since
+        dirLock.lock();
+        try {
+            File patches = patchFile(username);
+            if (patches.exists() && lastPatchVersion(patches) < user.getVersion()) {
+                Files.delete(patches.toPath());
+            }
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the account's changes as one patch record. Returns false, writing
+     * nothing, if a full save is needed instead: the change set can't describe the
+     * changes, the copy on disk isn't the one this account was loaded from, or the
+     * patches have grown large enough to fold back into the file.
+     */
+    private static boolean appendPatch(User user) throws IOException {
+        if (user.needsFullSave()) return false;
+        String username = user.getUsername();
+        File file = userFile(username);
+        File patches = patchFile(username);
+
+        // Journaled like a full save: the patch is in the file at once, and the fsync that makes it
+        // durable is shared with concurrent saves and happens after the directory lock is released
+        return journal.append(patches, () -> {
+            // The version on disk rather than knownVersions, which can lag behind another instance's
+            // save; holding the lock, nothing can be added between this check and the append
+            if (!journal.exists(file) || readVersion(username) != user.getVersion()) return null;
+            if (patches.length() > Math.max(MIN_PATCH_BYTES, file.length() / 2)) return null;
+
+            JsonObject patch = new JsonObject();
+            patch.addProperty("version", user.getVersion() + 1);
+            JsonObject fields = new JsonObject();
+            for (String name : user.getChangedFields()) {
+                fields.add(name, gson.toJsonTree(fieldValue(user, name)));
+            }
+            patch.add("fields", fields);
+            JsonArray tasks = new JsonArray();
+            for (Task task : user.getChangedTasks()) {
+                tasks.add(gson.toJsonTree(task));
+            }
+            patch.add("tasks", tasks);
+            JsonArray removed = new JsonArray();
+            user.getRemovedTaskIds().forEach(removed::add);
+            patch.add("removedTasks", removed);
+
+            user.setVersion(user.getVersion() + 1);
+            knownVersions.put(username, user.getVersion());
+            // A record cut short by a crash has no newline; start a fresh line after it
+            return ((endsTorn(patches) ? "\n" : "") + patch + "\n").getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private static boolean endsTorn(File patches) throws IOException {
+        if (!patches.exists()) return false;
+        try (FileChannel in = FileChannel.open(patches.toPath(), StandardOpenOption.READ)) {
+            long end = in.size();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            return end > 0 && in.read(last, end - 1) == 1 && last.get(0) != '\n';
+        }
+    }
+
+    private static Object fieldValue(User user, String name) throws IOException {
+        try {
+            Field field = User.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(user);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("User has no field " + name, e);
+        }
+    }
+
+    // Complete patch records in order; a line left half written by a crash is skipped
+    private static List<JsonObject> readPatches(File file) throws IOException {
+        List<JsonObject> patches = new ArrayList<>();
+        if (!file.exists()) return patches;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            try {
+                patches.add(JsonParser.parseString(line).getAsJsonObject());
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Skipping a damaged change record in " + file.getName());
+            }
+        }
+        return patches;
+    }
+
+    // Applies the patches newer than the document, in order
+    private static void applyPatches(JsonObject json, List<JsonObject> patches) {
+        long version = json.has("version") ? json.get("version").getAsLong() : 0;
+        for (JsonObject patch : patches) {
+            long patchVersion = patch.get("version").getAsLong();
+            if (patchVersion <= version) continue; // Already in the file
+
+            for (Map.Entry<String, JsonElement> field : patch.getAsJsonObject("fields").entrySet()) {
+                json.add(field.getKey(), field.getValue());
+            }
+            JsonArray tasks = json.has("tasks") ? json.getAsJsonArray("tasks") : new JsonArray();
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                JsonElement id = tasks.get(i).getAsJsonObject().get("id");
+                if (id != null) positions.put(id.getAsString(), i);
+            }
+            for (JsonElement task : patch.getAsJsonArray("tasks")) {
+                Integer position = positions.get(task.getAsJsonObject().get("id").getAsString());
+                if (position != null) {
+                    tasks.set(position, task);
+                } else {
+                    tasks.add(task);
+                }
+            }
+            JsonArray kept = new JsonArray();
+            Set<String> removed = new HashSet<>();
+            patch.getAsJsonArray("removedTasks").forEach(id -> removed.add(id.getAsString()));
+            for (JsonElement task : tasks) {
+                JsonElement id = task.getAsJsonObject().get("id");
+                if (id == null || !removed.contains(id.getAsString())) kept.add(task);
+            }
+            json.add("tasks", kept);
+
+            version = patchVersion;
+            json.addProperty("version", version);
+        }
+    }
+
+    // In the current schema's envelope; pretty-printed when stored as plain JSON, compact when compressed
+    private static byte[] encodeUser(User user) throws IOException {
+        Gson writer = codec == DocumentCodecs.PLAIN ? gson : compactGson;
+        String json = writer.toJson(UserSchema.wrap(writer.toJsonTree(user)));
+        return DocumentCodecs.encode(codec, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Reads an account file in whichever codec it was written with
+    private static JsonObject readDocument(File file) throws IOException {
+        byte[] json = DocumentCodecs.decode(readStored(file));
+        return JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    // A journaled file's newest content, which may still be only in the journal
+    private static byte[] readStored(File file) throws IOException {
+        byte[] stored = journal.read(file);
+        if (stored == null) throw new FileNotFoundException(file.getPath());
+        return stored;
+    }
+
+    /**
+     * Builds a compression dictionary from the task descriptions of up to a few hundred
+     * accounts and uses it for account files written from now on. Dictionaries are
+     * kept in data/dictionaries/, named by checksum, and never change or get deleted,
+     * since files written with them still need them to be read.
+     */
+    public static void trainDictionary() {
+        List<String> descriptions = new ArrayList<>();
+        int sampled = 0;
+        for (String username : index.getUsernames()) {
+            if (sampled++ >= DICTIONARY_SAMPLE) break;
+            try {
+                File file = userFile(username);
+                if (!journal.exists(file)) continue;
+                JsonObject json = UserSchema.unwrap(readDocument(file));
+                applyPatches(json, readPatches(patchFile(username)));
+                if (!json.has("tasks")) continue;
+                for (JsonElement task : json.getAsJsonArray("tasks")) {
+                    JsonElement description = task.getAsJsonObject().get("description");
+                    if (description != null) descriptions.add(description.getAsString());
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        byte[] dictionary = DocumentCodecs.trainDictionary(descriptions);
+        long id = DocumentCodecs.adler32(dictionary);
+        try {
+            journal.write(dictionaryFile(id), dictionary);
+            DocumentCodecs.setWriteDictionary(dictionary);
+            System.out.println("📚 Trained a compression dictionary from " + descriptions.size()
+                    + " task descriptions in " + Math.min(sampled, index.size()) + " account(s).");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static File dictionaryFile(long id) {
+        return new File(DICTIONARY_DIR + String.format("%08x", id) + ".dict");
+    }
+
+    // Uses the newest dictionary for writing, or trains one once there are enough accounts to learn from
+    private static void setUpDictionary() {
+        File[] trained = new File(DICTIONARY_DIR).listFiles((dir, name) -> name.endsWith(".dict"));
+        File newest = null;
+        for (File file : trained != null ? trained : new File[0]) {
+            if (newest == null || file.lastModified() > newest.lastModified()) newest = file;
+        }
+        if (newest != null) {
+            try {
+                DocumentCodecs.setWriteDictionary(Files.readAllBytes(newest.toPath()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (codec != DocumentCodecs.PLAIN && index.size() >= MIN_ACCOUNTS_FOR_DICTIONARY) {
+            trainDictionary();
+        }
+    }
+
+    private static long lastVersion(List<JsonObject> patches) {
+        return patches.isEmpty() ? 0 : patches.get(patches.size() - 1).get("version").getAsLong();
+    }
+
+    // lastVersion(readPatches(file)) without reading the whole file: only as much of its end as holds a complete record
+    private static long lastPatchVersion(File file) throws IOException {
+        if (!file.exists()) return 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            for (long window = 8192; ; window *= 2) {
+                int size = (int) Math.min(window, length);
+                byte[] tail = new byte[size];
+                in.seek(length - size);
+                in.readFully(tail);
+                String[] lines = new String(tail, StandardCharsets.UTF_8).split("\n");
+                int first = size < length ? 1 : 0; // The window may start mid-record
+                for (int i = lines.length - 1; i >= first; i--) {
+                    if (lines[i].isBlank()) continue;
+                    try {
+                        return JsonParser.parseString(lines[i]).getAsJsonObject().get("version").getAsLong();
+                    } catch (RuntimeException e) { // Half written by a crash, as readPatches skips it
+                    }
+                }
+                if (size == length) return 0;
+            }
+        }
+    }
+
+    /**
+     * Read-modify-write of an account under the directory lock: the change is applied
+     * to the copy on disk, so nothing another instance saved is lost.
+     * Returns the saved account, or null if it doesn't exist.
+     */
+    public static User updateUser(String username, Consumer<User> change) {
+        try {
+            dirLock.lock();
+            try {
+                User user = loadUser(username);
+                if (user == null) return null;
+                change.accept(user);
+                saveUser(user);
+                return user;
+            } finally {
+                dirLock.unlock();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites every account still stored in an older schema, on the given number of
+     * threads, and completes with how many were rewritten. Optional: old accounts are
+     * upgraded anyway when read. Reading and upgrading run in parallel; each write
+     * happens under the directory lock and is skipped if the account was saved in the
+     * meantime, since that save already upgraded it.
+     */
+    public static CompletableFuture<Integer> migrateAllAccounts(int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "data-migrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> accounts = new ArrayList<>();
+        for (String username : index.getUsernames()) {
+            accounts.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return migrateAccount(username);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("❌ Could not upgrade " + username + ": " + e.getMessage());
+                    return false;
+                }
+            }, pool));
+        }
+        return CompletableFuture.allOf(accounts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            pool.shutdown();
+            int migrated = (int) accounts.stream().filter(CompletableFuture::join).count();
+            System.out.printf("🧰 Upgraded %d of %d account(s) to schema %d in %.0f ms.%n",
+                    migrated, accounts.size(), UserSchema.CURRENT, (System.nanoTime() - start) / 1e6);
+            return migrated;
+        });
+    }
+
+    private static boolean migrateAccount(String username) throws IOException {
+        File file = userFile(username);
+        if (!journal.exists(file) || readHeader(file)[0] >= UserSchema.CURRENT) return false;
+        User user = readUser(username);
+        dirLock.lock();
+        try {
+            // Read again under the lock: another instance may have saved since readUser
+            if (readVersion(username) != user.getVersion()) return false;
+            prefetched.remove(username);
+            writeFullUser(user);
+            return true;
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    // The stored account's version: the account file's, or its newest patch's
+    private static long readVersion(String username) throws IOException {
+        long version = 0;
+        File file = userFile(username);
+        if (journal.exists(file)) {
+            try {
+                version = readHeader(file)[1];
+            } catch (RuntimeException e) { // Malformed file, nothing to protect
+            }
+        }
+        return Math.max(version, lastPatchVersion(patchFile(username)));
+    }
+
+    // The schema and version of an account file, read without building the whole document.
+    // Stops at the version, which User keeps ahead of the tasks
+    private static long[] readHeader(File file) throws IOException {
+        byte[] json = DocumentCodecs.decode(readStored(file));
+        long schema = 1;
+        long version = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("schema")) {
+                    schema = reader.nextLong();
+                } else if (name.equals("version")) { // Schema 1 keeps it at the top, and has no "schema"
+                    return new long[]{schema, reader.nextLong()};
+                } else if (name.equals("user")) { // Always after "schema"
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("version")) {
+                            return new long[]{schema, reader.nextLong()};
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        return new long[]{schema, version};
+    }
+
+    /**
+     * Stores the password of a new account, claiming the username. Returns false,
+     * storing nothing, if the name was taken since userExists said it was free
+     * (another instance signed up the same name). Hashing is deliberately slow;
+     * call from a background thread or use savePasswordAsync.
+     */
+    public static boolean savePassword(String username, String password) throws IOException {
+        String hashed = PasswordHasher.hash(password);
+        boolean[] claimed = {false};
+        dirLock.lock();
+        try {
+            // Decided on the shard as it is on disk, so a sign-up by another instance can't be overwritten
+            updateCredentials(UserIndex.shardOf(username), passwords -> claimed[0] = passwords.putIfAbsent(username, hashed) == null);
+            if (claimed[0]) index.add(username);
+        } finally {
+            dirLock.unlock();
+        }
+        return claimed[0];
+    }
+
+    // Completes with savePassword's result, or exceptionally if the credentials couldn't be written
+    public static CompletableFuture<Boolean> savePasswordAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return savePassword(username, password);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not save the password of " + username, e);
+            }
+        }, background);
     }
 
     public static boolean userExists(String username) {
-        return loadPasswordMap().containsKey(username);
+        if (index.contains(username)) return true;
+        // Not indexed: another instance's sign-up the watcher hasn't seen yet, or one
+        // that crashed before reaching the index. The credential shard has the final say.
+        if (storedPassword(username) == null) return false;
+        try {
+            dirLock.lock();
+            try {
+                index.add(username);
+            } finally {
+                dirLock.unlock();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return true;
     }
 
+    public static int getUserCount() {
+        return index.size();
+    }
+
+    public static Set<String> getUsernames() {
+        return index.getUsernames();
+    }
+
+    // Slow for hashed passwords; call from a background thread or use verifyPasswordAsync
     public static boolean verifyPassword(String username, String input) {
-        String savedPassword = loadPasswordMap().get(username);
-        return input.equals(savedPassword);
+        String savedPassword = storedPassword(username);
+        if (!PasswordHasher.verify(input, savedPassword)) return false;
+
+        // Now that we know the password, upgrade a plaintext or weaker entry in the background
+        if (PasswordHasher.needsRehash(savedPassword)) {
+            background.execute(() -> {
+                String hashed = PasswordHasher.hash(input);
+                try {
+                    updateCredentials(UserIndex.shardOf(username), passwords -> passwords.replace(username, savedPassword, hashed));
+                } catch (IOException e) { // The old entry still works; the next sign-in tries again
+                    e.printStackTrace();
+                }
+            });
+        }
+        return true;
     }
 
-    private static Map<String, String> loadPasswordMap() {
-        File file = new File(PASSWORD_FILE);
-        if (!file.exists()) return new HashMap<>();
-        try (FileReader reader = new FileReader(file)) {
-            Type type = new TypeToken<Map<String, String>>() {}.getType();
-            return gson.fromJson(reader, type);
+    // Runs alongside loadUserAsync so a sign-in waits for whichever takes longer, not both
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String username, String input) {
+        return CompletableFuture.supplyAsync(() -> verifyPassword(username, input), background);
+    }
+
+    private static void migratePlaintextPasswords() {
+        PasswordHasher.warmUp();
+        int migrated = 0;
+        for (int shard = 0; shard < UserIndex.SHARDS; shard++) {
+            Map<String, String[]> hashed = new HashMap<>(); // username -> {plaintext, hash}
+            for (Map.Entry<String, String> entry : readPasswordMap(credentialsFile(shard)).entrySet()) {
+                String plaintext = entry.getValue();
+                if (!PasswordHasher.isHashed(plaintext)) {
+                    hashed.put(entry.getKey(), new String[]{plaintext, PasswordHasher.hash(plaintext)});
+                }
+            }
+            if (hashed.isEmpty()) continue;
+
+            // Skip anyone whose password changed (or was upgraded at sign-in) in the meantime
+            try {
+                updateCredentials(shard, passwords -> hashed.forEach((username, pair) -> passwords.replace(username, pair[0], pair[1])));
+            } catch (IOException e) { // Left in plaintext until the next start
+                e.printStackTrace();
+                continue;
+            }
+            migrated += hashed.size();
+        }
+        if (migrated > 0) {
+            System.out.println("🔒 Hashed " + migrated + " stored password(s).");
+        }
+    }
+
+    private static String storedPassword(String username) {
+        return credentials(UserIndex.shardOf(username)).get(username);
+    }
+
+    // Read on first use, so startup and sign-in only touch the shards they need
+    private static Map<String, String> credentials(int shard) {
+        Map<String, String> passwords = credentialShards.get(shard);
+        return passwords != null ? passwords : reloadCredentials(shard);
+    }
+
+    // Applies a change on top of the shard on disk, so accounts created by other instances are kept
+    private static void updateCredentials(int shard, Consumer<Map<String, String>> change) throws IOException {
+        journal.write(credentialsFile(shard), () -> {
+            Map<String, String> passwords = reloadCredentials(shard);
+            change.accept(passwords);
+            return gson.toJson(passwords).getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private static Map<String, String> reloadCredentials(int shard) {
+        Map<String, String> onDisk = readPasswordMap(credentialsFile(shard));
+        Map<String, String> passwords = credentialShards.computeIfAbsent(shard, s -> new ConcurrentHashMap<>());
+        passwords.keySet().retainAll(onDisk.keySet());
+        passwords.putAll(onDisk);
+        return passwords;
+    }
+
+    /**
+     * Moves a data directory in the old flat layout (every account in data/, every
+     * password in data/users.json) to the sharded one. Safe to run again after an
+     * interruption: users.json is only renamed once everything else is in place.
+     * What is already in the sharded layout wins over the old files.
+     */
+    private static void migrateFlatLayout() {
+        File legacy = new File(LEGACY_PASSWORD_FILE);
+        if (!legacy.exists()) return;
+        try {
+            dirLock.lock();
+            try {
+                if (!legacy.exists()) return; // Another instance got there first
+                Map<String, String> passwords = readPasswordMap(legacy);
+
+                int moved = 0;
+                File[] accounts = new File(USER_DIR).listFiles((dir, name) ->
+                        name.endsWith(".json") && !name.equals(legacy.getName()));
+                for (File file : accounts != null ? accounts : new File[0]) {
+                    String username = file.getName().substring(0, file.getName().length() - ".json".length());
+                    File target = userFile(username);
+                    if (target.exists()) {
+                        System.out.println("⚠️ Kept the sharded copy of " + username + "; the old file stays in " + USER_DIR);
+                        continue;
+                    }
+                    target.getParentFile().mkdirs();
+                    Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                }
+
+                Map<Integer, Map<String, String>> shards = new TreeMap<>();
+                for (Map.Entry<String, String> entry : passwords.entrySet()) {
+                    shards.computeIfAbsent(UserIndex.shardOf(entry.getKey()), s -> new HashMap<>())
+                            .put(entry.getKey(), entry.getValue());
+                }
+                for (Map.Entry<Integer, Map<String, String>> shard : shards.entrySet()) {
+                    Map<String, String> merged = readPasswordMap(credentialsFile(shard.getKey()));
+                    shard.getValue().forEach(merged::putIfAbsent);
+                    journal.write(credentialsFile(shard.getKey()), gson.toJson(merged).getBytes(StandardCharsets.UTF_8));
+                }
+
+                Set<String> usernames = new TreeSet<>(new UserIndex(new File(USER_DIR), false).getUsernames());
+                usernames.addAll(passwords.keySet());
+                journal.write(new File(USER_DIR + UserIndex.INDEX_FILE), UserIndex.format(usernames));
+
+                Files.move(legacy.toPath(), new File(LEGACY_PASSWORD_FILE + ".migrated").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("📦 Moved " + moved + " account file(s) and " + passwords.size()
+                        + " password(s) to the sharded data layout.");
+            } finally {
+                dirLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not migrate the data directory", e);
+        }
+    }
+
+    // Watches data/ for files changed by other instances and drops only what they affect
+    private static void watchDataDirectory() {
+        Path dataDir = new File(USER_DIR).toPath().toAbsolutePath().normalize();
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            // Watching isn't recursive, so every shard directory is registered on its own
+            dataDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            dataDir.resolve("credentials").register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            for (int shard = 0; shard < UserIndex.SHARDS; shard++) {
+                dataDir.resolve("users").resolve(UserIndex.shardName(shard)).register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
         } catch (IOException e) {
             e.printStackTrace();
-            return new HashMap<>();
+            return;
         }
+
+        Thread thread = new Thread(() -> {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        forgetCachedData();
+                    } else {
+                        onFileChanged(dataDir, dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) return;
+            }
+        }, "data-watcher");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private static void savePasswordMap() {
-        try (FileWriter writer = new FileWriter(PASSWORD_FILE)) {
-            gson.toJson(userPasswords, writer);
+    private static void onFileChanged(Path dataDir, Path path) {
+        String name = path.getFileName().toString();
+        Path parent = path.getParent();
+        String username = null;
+        try {
+            // Under the lock so a reload can't interleave with one of our own read-modify-writes
+            dirLock.lock();
+            try {
+                if (name.equals(UserIndex.INDEX_FILE)) {
+                    index.refresh(); // Only reads what was appended
+                    return;
+                }
+                boolean patch = name.endsWith(".patch");
+                if (!name.endsWith(".json") && !patch) return; // Temp files, the journal, the lock
+                String stem = name.substring(0, name.lastIndexOf('.'));
+
+                if (parent.equals(dataDir.resolve("credentials"))) {
+                    if (patch) return;
+                    // Cheap and harmless to repeat for our own writes; shards never read stay unread
+                    int shard = Integer.parseInt(stem, 16);
+                    if (credentialShards.containsKey(shard)) reloadCredentials(shard);
+                    return;
+                }
+                if (!parent.getParent().equals(dataDir.resolve("users"))) return;
+
+                Long known = knownVersions.get(stem);
+                if (known != null && readVersion(stem) == known) return; // Our own write
+                username = stem;
+            } finally {
+                dirLock.unlock();
+            }
+        } catch (ClosedChannelException e) {
+            return; // The app is shutting down
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        prefetched.remove(username);
+        knownVersions.remove(username);
+        System.out.println("🔄 " + username + " was changed by another instance.");
+    }
+
+    // Events were missed; forget everything that may have changed
+    private static void forgetCachedData() {
+        try {
+            dirLock.lock();
+            try {
+                credentialShards.clear();
+                prefetched.clear();
+                knownVersions.clear();
+                index.refresh();
+            } finally {
+                dirLock.unlock();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Map<String, String> readPasswordMap(File file) {
+        try {
+            byte[] stored = journal.read(file);
+            if (stored == null) return new HashMap<>();
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(stored), StandardCharsets.UTF_8);
+            Type type = new TypeToken<Map<String, String>>() {}.getType();
+            Map<String, String> map = gson.fromJson(reader, type);
+            return map != null ? map : new HashMap<>();
         } catch (IOException e) {
             e.printStackTrace();
+            return new HashMap<>();
         }
     }
 }
@@ -0,0 +1,76 @@
+package models;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// One shared String per distinct task description. Histories repeat the same
+// few descriptions ("Review notes for Biology") many times, across every user
+// loaded in this process, and every task read from JSON would otherwise hold
+// its own copy.
+//
+// The pool is a fixed number of slots (-Ddescriptions.pool, 0 turns it off)
+// holding weak references: it never grows, and a description no task uses any
+// more can still be collected. A description that finds its slots taken by
+// others just isn't shared; that only costs memory, never correctness.
+public class DescriptionPool {
+    private static final int PROBES = 4; // Slots tried per description before replacing one
+    private static final AtomicReferenceArray<WeakReference<String>> slots =
+            new AtomicReferenceArray<>(capacity(Integer.getInteger("descriptions.pool", 8192)));
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    // Rounded up to a power of two so a slot is a mask of the hash
+    private static int capacity(int requested) {
+        if (requested <= 0) return 0;
+        return Math.max(PROBES, Integer.highestOneBit(Math.min(requested, 1 << 24) - 1) << 1);
+    }
+
+    public static String intern(String description) {
+        int capacity = slots.length();
+        if (description == null || capacity == 0) return description;
+
+        // Fibonacci hashing: similar descriptions ("Chapter 11", "Chapter 12") have
+        // neighbouring hash codes, which would pile up in neighbouring slots
+        int first = (description.hashCode() * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(capacity));
+        int free = -1;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (first + i) & (capacity - 1);
+            WeakReference<String> ref = slots.get(slot);
+            String shared = ref != null ? ref.get() : null;
+            if (shared == null) {
+                if (free < 0) free = slot;
+            } else if (shared.equals(description)) {
+                hits.increment();
+                return shared;
+            }
+        }
+        misses.increment();
+        slots.set(free >= 0 ? free : first, new WeakReference<>(description));
+        return description;
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    // Share of lookups that found an existing copy, 0 before any lookup
+    public static double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public static int getCapacity() {
+        return slots.length();
+    }
+
+    public static String getStats() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d slots",
+                getHits(), getMisses(), 100 * getHitRate(), getCapacity());
+    }
+}
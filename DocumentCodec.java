@@ -0,0 +1,20 @@
+//util->DocumentCodec
+package util;
+
+import java.io.IOException;
+
+/**
+ * Turns a JSON document into the bytes stored on disk and back.
+ * Register new codecs with DocumentCodecs.register; the id is written in each
+ * compressed file's header, so it must never change once files use it.
+ */
+public interface DocumentCodec {
+    int getId();
+
+    // The name used for -Ddata.codec
+    String getName();
+
+    byte[] compress(byte[] json) throws IOException;
+
+    byte[] decompress(byte[] data) throws IOException;
+}
@@ -0,0 +1,345 @@
+//util->DocumentCodecs
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import models.Task;
+import models.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The codecs account files can be stored with, and the header that says which was used.
+ * Plain files are JSON, as before. Encoded files start with a zero byte (which JSON
+ * never does), "UZ" and the codec id, so every file is read correctly whatever
+ * -Ddata.codec=plain|deflate|deflate-fast is set to now.
+ *
+ * The deflate codecs use a preset dictionary: text likely to appear in the document
+ * (field names, difficulty names, common task descriptions), so even its first
+ * occurrence compresses. zlib records the dictionary's Adler-32 in the stream,
+ * which is how a reader finds the right one. trainDictionary builds a dictionary
+ * from sample task descriptions; without one, the built-in words are used.
+ *
+ * Run java util.DocumentCodecs [accounts] [tasks] to compare size and speed.
+ */
+public class DocumentCodecs {
+    private static final byte[] MAGIC = {0, 'U', 'Z'};
+    private static final int MAX_DICTIONARY = 32 * 1024; // Deflate's window; anything further back is never used
+
+    // Fragments every compact account document repeats, most common last (nearer matches cost fewer bits).
+    // Never edit: files compressed with it find it by its checksum
+    private static final byte[] BUILT_IN_WORDS = ("\"initialXp\":0,\"initialLevel\":0,\"initialCoins\":0,"
+            + "\"trackingInitialized\":false,\"groups\":[],\"recentXp\":{\"xp\":[0,0,0,0,0,0,0,0,0,0,0,0,0,0,0,"
+            + "0,0,0,0,0,0,0,0,0,0,0,0,0,0,0],\"lastDay\":\"version\":{\"username\":\"\",\"xp\":\"level\":"
+            + "\"coins\":\"totalCompletedTasks\":\"tasks\":[\"difficulty\":\"HARD\",\"difficulty\":\"MEDIUM\","
+            + "\"completed\":true,\"completionDate\":\"20\"difficulty\":\"EASY\",\"completed\":false},"
+            + "{\"id\":\"\",\"description\":\"\",\"xpReward\":\",\"coinReward\":")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final Map<Integer, DocumentCodec> byId = new ConcurrentHashMap<>();
+    private static final Map<String, DocumentCodec> byName = new ConcurrentHashMap<>();
+    private static final Map<Long, byte[]> dictionaries = new ConcurrentHashMap<>(); // Adler-32 -> dictionary
+
+    private static volatile byte[] writeDictionary = BUILT_IN_WORDS;
+    private static volatile LongFunction<byte[]> dictionaryLoader;
+
+    public static final DocumentCodec PLAIN = new DocumentCodec() {
+        public int getId() {
+            return 0;
+        }
+
+        public String getName() {
+            return "plain";
+        }
+
+        public byte[] compress(byte[] json) {
+            return json;
+        }
+
+        public byte[] decompress(byte[] data) {
+            return data;
+        }
+    };
+
+    // Same stream format, so both share an id; the fast one trades size for speed
+    public static final DocumentCodec DEFLATE = new DeflateCodec(1, "deflate", Deflater.DEFAULT_COMPRESSION);
+    public static final DocumentCodec DEFLATE_FAST = new DeflateCodec(1, "deflate-fast", Deflater.BEST_SPEED);
+
+    static {
+        register(PLAIN);
+        register(DEFLATE);
+        register(DEFLATE_FAST);
+        addDictionary(BUILT_IN_WORDS);
+    }
+
+    public static void register(DocumentCodec codec) {
+        byId.putIfAbsent(codec.getId(), codec);
+        byName.put(codec.getName(), codec);
+    }
+
+    public static DocumentCodec forName(String name) {
+        DocumentCodec codec = byName.get(name.toLowerCase());
+        if (codec == null) throw new IllegalArgumentException("Unknown codec: " + name);
+        return codec;
+    }
+
+    // -Ddata.codec, plain by default
+    public static DocumentCodec getDefault() {
+        return forName(System.getProperty("data.codec", "plain"));
+    }
+
+    public static byte[] encode(DocumentCodec codec, byte[] json) throws IOException {
+        if (codec == PLAIN) return json;
+        byte[] body = codec.compress(json);
+        byte[] stored = Arrays.copyOf(MAGIC, MAGIC.length + 1 + body.length);
+        stored[MAGIC.length] = (byte) codec.getId();
+        System.arraycopy(body, 0, stored, MAGIC.length + 1, body.length);
+        return stored;
+    }
+
+    // Detects the format from the header, so files in any codec can be read
+    public static byte[] decode(byte[] stored) throws IOException {
+        if (!isEncoded(stored)) return stored;
+        DocumentCodec codec = byId.get(stored[MAGIC.length] & 0xff);
+        if (codec == null) throw new IOException("Unknown codec id " + (stored[MAGIC.length] & 0xff));
+        return codec.decompress(Arrays.copyOfRange(stored, MAGIC.length + 1, stored.length));
+    }
+
+    public static boolean isEncoded(byte[] stored) {
+        return stored.length > MAGIC.length
+                && Arrays.equals(stored, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    // Makes a dictionary available for reading; returns its Adler-32, which names it
+    public static long addDictionary(byte[] dictionary) {
+        long id = adler32(dictionary);
+        dictionaries.put(id, dictionary);
+        return id;
+    }
+
+    // The dictionary new documents are compressed with
+    public static void setWriteDictionary(byte[] dictionary) {
+        addDictionary(dictionary);
+        writeDictionary = dictionary;
+    }
+
+    // Asked for dictionaries that were never added, e.g. one trained by another instance
+    public static void setDictionaryLoader(LongFunction<byte[]> loader) {
+        dictionaryLoader = loader;
+    }
+
+    public static long adler32(byte[] bytes) {
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        return adler.getValue();
+    }
+
+    private static byte[] dictionary(long id) throws IOException {
+        byte[] dictionary = dictionaries.get(id);
+        LongFunction<byte[]> loader = dictionaryLoader;
+        if (dictionary == null && loader != null) {
+            dictionary = loader.apply(id);
+            if (dictionary != null && adler32(dictionary) == id) addDictionary(dictionary);
+        }
+        if (dictionary == null) throw new IOException(String.format("Missing compression dictionary %08x", id));
+        return dictionary;
+    }
+
+    /**
+     * Builds a dictionary from sample task descriptions: the ones seen more than once,
+     * written the way a saved task contains them, followed by the built-in words.
+     * Descriptions that don't fit in deflate's 32 KB window are left out, rarest first.
+     */
+    public static byte[] trainDictionary(Collection<String> descriptions) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String description : descriptions) {
+            counts.merge(description, 1, Integer::sum);
+        }
+        List<Map.Entry<String, Integer>> common = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) common.add(entry);
+        }
+        common.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        List<byte[]> chosen = new ArrayList<>();
+        int budget = MAX_DICTIONARY - BUILT_IN_WORDS.length;
+        for (Map.Entry<String, Integer> entry : common) {
+            byte[] fragment = ("\"description\":" + new JsonPrimitive(entry.getKey()) + ",")
+                    .getBytes(StandardCharsets.UTF_8);
+            if (fragment.length > budget) continue;
+            chosen.add(fragment);
+            budget -= fragment.length;
+        }
+        Collections.reverse(chosen); // Most common nearest the end
+
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(MAX_DICTIONARY);
+        for (byte[] fragment : chosen) {
+            dictionary.writeBytes(fragment);
+        }
+        dictionary.writeBytes(BUILT_IN_WORDS);
+        return dictionary.toByteArray();
+    }
+
+    private static class DeflateCodec implements DocumentCodec {
+        private final int id;
+        private final String name;
+        private final int level;
+
+        private DeflateCodec(int id, String name, int level) {
+            this.id = id;
+            this.name = name;
+            this.level = level;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] compress(byte[] json) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setDictionary(writeDictionary);
+                deflater.setInput(json);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        public byte[] decompress(byte[] data) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 6);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    int length = inflater.inflate(buffer);
+                    if (length == 0) {
+                        if (inflater.needsDictionary()) {
+                            inflater.setDictionary(dictionary(inflater.getAdler() & 0xffffffffL));
+                        } else if (inflater.needsInput()) {
+                            throw new EOFException("Compressed document is truncated");
+                        }
+                    }
+                    out.write(buffer, 0, length);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IOException("Compressed document is corrupt", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Compares stored size and encode/decode time per codec on generated accounts.
+     * Usage: java util.DocumentCodecs [accounts] [tasks per account]
+     */
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        // Study tasks repeat a lot between students, so descriptions come from a shared pool
+        SampleHistory history = new SampleHistory();
+        Random random = history.random();
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            pool.add(history.description());
+        }
+
+        GsonBuilder builder = new GsonBuilder().registerTypeAdapter(LocalDate.class,
+                (JsonSerializer<LocalDate>) (date, type, context) -> new JsonPrimitive(date.toString()));
+        Gson pretty = builder.setPrettyPrinting().create();
+        Gson compact = new GsonBuilder().registerTypeAdapter(LocalDate.class,
+                (JsonSerializer<LocalDate>) (date, type, context) -> new JsonPrimitive(date.toString())).create();
+        List<byte[]> prettyDocs = new ArrayList<>();
+        List<byte[]> compactDocs = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        for (int a = 0; a < accounts; a++) {
+            User user = new User("student" + a);
+            for (int t = 0; t < tasks; t++) {
+                Task.Difficulty difficulty = Task.Difficulty.values()[random.nextInt(3)];
+                Task task = new Task(pool.get((int) Math.abs(random.nextGaussian() * 60) % pool.size()),
+                        10 * (difficulty.ordinal() + 1), 5 * (difficulty.ordinal() + 1), difficulty);
+                if (random.nextBoolean()) task.setCompleted(true);
+                user.addTask(task);
+                if (a < accounts / 4) descriptions.add(task.getDescription()); // Training sample
+            }
+            user.addXP(random.nextInt(5000));
+            prettyDocs.add(pretty.toJson(user).getBytes(StandardCharsets.UTF_8));
+            compactDocs.add(compact.toJson(user).getBytes(StandardCharsets.UTF_8));
+        }
+
+        long prettyBytes = 0;
+        for (byte[] doc : prettyDocs) {
+            prettyBytes += doc.length;
+        }
+        System.out.printf("%-24s %10s %7s %10s %10s%n", "codec", "bytes", "ratio", "save µs", "load µs");
+        System.out.printf("%-24s %10d %6.1fx %10s %10s%n", "plain (pretty, current)", prettyBytes, 1.0, "-", "-");
+
+        byte[] trained = trainDictionary(descriptions);
+        Object[][] runs = {
+                {"deflate, no dictionary", DEFLATE, new byte[0]},
+                {"deflate", DEFLATE, BUILT_IN_WORDS},
+                {"deflate + trained dict", DEFLATE, trained},
+                {"deflate-fast + trained", DEFLATE_FAST, trained},
+        };
+        for (Object[] run : runs) {
+            DocumentCodec codec = (DocumentCodec) run[1];
+            setWriteDictionary((byte[]) run[2]);
+            for (int warmUp = 0; warmUp < 3; warmUp++) {
+                for (byte[] doc : compactDocs) {
+                    decode(encode(codec, doc));
+                }
+            }
+
+            long bytes = 0;
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (byte[] doc : compactDocs) {
+                long start = System.nanoTime();
+                byte[] stored = encode(codec, doc);
+                encodeNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                byte[] back = decode(stored);
+                decodeNanos += System.nanoTime() - start;
+                if (!Arrays.equals(back, doc)) throw new IllegalStateException(codec.getName() + " round trip failed");
+                bytes += stored.length;
+            }
+            System.out.printf("%-24s %10d %6.1fx %10.1f %10.1f%n", run[0], bytes, (double) prettyBytes / bytes,
+                    encodeNanos / 1e3 / accounts, decodeNanos / 1e3 / accounts);
+        }
+        setWriteDictionary(BUILT_IN_WORDS);
+    }
+}
@@ -5,9 +5,72 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+/**
+ * Connects to Firebase on a background thread so the first window does not wait
+ * for credentials to load. Work that needs Firebase is queued with whenReady and
+ * runs, in the order it was queued, once initialization has finished.
+ */
 public class FirebaseConfig {
-    public static void initialize() {
+    private static CompletableFuture<Boolean> ready;
+    private static final List<Consumer<Boolean>> waiting = new ArrayList<>();
+
+    // Starts initialization once; the future completes with whether Firebase is usable
+    public static synchronized CompletableFuture<Boolean> initializeAsync() {
+        if (ready == null) {
+            ready = new CompletableFuture<>();
+            Thread thread = new Thread(() -> finish(initialize()), "firebase-init");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return ready;
+    }
+
+    public static synchronized boolean isReady() {
+        return ready != null && ready.isDone() && ready.join();
+    }
+
+    // Runs the action with the initialization result, starting initialization if nobody has yet
+    public static void whenReady(Consumer<Boolean> action) {
+        boolean ok;
+        synchronized (FirebaseConfig.class) {
+            initializeAsync();
+            if (!ready.isDone()) {
+                waiting.add(action);
+                return;
+            }
+            ok = ready.join();
+        }
+        action.accept(ok);
+    }
+
+    // The future only completes once the queue is empty, so later actions can't overtake queued ones
+    private static void finish(boolean ok) {
+        while (true) {
+            List<Consumer<Boolean>> queued;
+            synchronized (FirebaseConfig.class) {
+                if (waiting.isEmpty()) {
+                    ready.complete(ok);
+                    return;
+                }
+                queued = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (Consumer<Boolean> action : queued) {
+                try {
+                    action.accept(ok);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static boolean initialize() {
         try {
             // Load the service account from resources using classloader
             InputStream serviceAccount = FirebaseConfig.class.getClassLoader()
@@ -15,7 +78,7 @@ public class FirebaseConfig {
 
             if (serviceAccount == null) {
                 System.err.println("❌ serviceAccountKey.json not found in resources.");
-                return;
+                return false;
             }
 
             FirebaseOptions options = FirebaseOptions.builder()
@@ -25,9 +88,11 @@ public class FirebaseConfig {
 
             FirebaseApp.initializeApp(options);
             System.out.println("✅ Firebase initialized successfully.");
+            return true;
         } catch (Exception e) {
             System.err.println("❌ Failed to initialize Firebase.");
             e.printStackTrace();
+            return false;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+//firebase->FirebaseLeaderboardService
+package firebase;
+
+import com.google.firebase.database.*;
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+import util.LeaderboardService;
+import util.WindowedLeaderboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Leaderboard stored under the "leaderboard" node of the Firebase Realtime Database,
+// group leaderboards under "groups/<group>" and daily XP totals under "xpDaily/<day>/<username>"
+public class FirebaseLeaderboardService implements LeaderboardService {
+
+    @Override
+    public CompletableFuture<Void> submit(LeaderboardEntry entry) {
+        return submitAll(List.of(entry));
+    }
+
+    // One multi-path write for all entries
+    @Override
+    public CompletableFuture<Void> submitAll(List<LeaderboardEntry> entries) {
+        if (entries.isEmpty()) return CompletableFuture.completedFuture(null);
+        Map<String, Object> updates = new HashMap<>();
+        for (LeaderboardEntry entry : entries) {
+            putEntry(updates, entry.getUsername(), entry); // Use username as unique key
+        }
+        return write("leaderboard", updates);
+    }
+
+    // One multi-path write covering every group
+    @Override
+    public CompletableFuture<Void> submitToGroups(LeaderboardEntry entry, Collection<String> groups) {
+        if (groups.isEmpty()) return CompletableFuture.completedFuture(null);
+        Map<String, Object> updates = new HashMap<>();
+        for (String group : groups) {
+            putEntry(updates, toKey(group) + "/" + entry.getUsername(), entry);
+        }
+        return write("groups", updates);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitDailyXp(LeaderboardEntry entry, long epochDay, int dayXp) {
+        Map<String, Object> updates = new HashMap<>();
+        putEntry(updates, epochDay + "/" + entry.getUsername(),
+                new LeaderboardEntry(entry.getUsername(), entry.getLevel(), dayXp,
+                        entry.getCompletedTasks(), entry.getUpdatedAt()));
+        return write("xpDaily", updates);
+    }
+
+    @Override
+    public void fetchAll(Callback callback) {
+        fetch("leaderboard", callback);
+    }
+
+    @Override
+    public void fetchGroup(String group, Callback callback) {
+        fetch("groups/" + toKey(group), callback);
+    }
+
+    // Firebase has no server-side aggregation, so the window's days are read in one
+    // query and summed here; days older than the window are never downloaded
+    @Override
+    public void fetchWindow(LeaderboardWindow window, Callback callback) {
+        long firstDay = LeaderboardWindow.currentDay() - window.getDays() + 1;
+        read(database -> database.getReference("xpDaily").orderByKey().startAt(String.valueOf(firstDay)),
+                callback, new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                Map<String, Long> totals = new HashMap<>();
+                Map<String, LeaderboardEntry> latest = new HashMap<>();
+
+                // Days arrive in key order, so the last entry seen per user is the newest
+                for (DataSnapshot day : snapshot.getChildren()) {
+                    for (LeaderboardEntry gained : parseEntries(day)) {
+                        totals.merge(gained.getUsername(), (long) gained.getXp(), Long::sum);
+                        latest.put(gained.getUsername(), gained);
+                    }
+                }
+
+                List<LeaderboardEntry> entries = new ArrayList<>();
+                for (Map.Entry<String, Long> total : totals.entrySet()) {
+                    LeaderboardEntry stats = latest.get(total.getKey());
+                    entries.add(new LeaderboardEntry(total.getKey(), stats.getLevel(),
+                            (int) Math.min(Integer.MAX_VALUE, total.getValue()),
+                            stats.getCompletedTasks(), stats.getUpdatedAt()));
+                }
+                entries.sort(WindowedLeaderboard.BY_WINDOW_XP);
+                callback.onLoaded(entries);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                callback.onError(error.getMessage());
+            }
+        });
+    }
+
+    // Writes issued before Firebase is ready are queued and sent in order once it is.
+    // Completes when the database confirms the write, which is long after this returns
+    private CompletableFuture<Void> write(String path, Map<String, Object> updates) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        FirebaseConfig.whenReady(ready -> {
+            if (!ready) {
+                written.completeExceptionally(new IllegalStateException("Firebase is not available"));
+                return;
+            }
+            try {
+                FirebaseDatabase.getInstance().getReference(path).updateChildren(updates, (error, ref) -> {
+                    if (error != null) {
+                        written.completeExceptionally(error.toException());
+                    } else {
+                        written.complete(null);
+                    }
+                });
+            } catch (RuntimeException e) { // Not initialized, or the updates were rejected up front
+                written.completeExceptionally(e);
+            }
+        });
+        return written;
+    }
+
+    private void read(Function<FirebaseDatabase, Query> target, Callback callback, ValueEventListener listener) {
+        FirebaseConfig.whenReady(ready -> {
+            if (!ready) {
+                callback.onError("Firebase is not available");
+                return;
+            }
+            try {
+                target.apply(FirebaseDatabase.getInstance()).addListenerForSingleValueEvent(listener);
+            } catch (IllegalStateException e) {
+                callback.onError("Firebase is not initialized");
+            }
+        });
+    }
+
+    private void putEntry(Map<String, Object> updates, String path, LeaderboardEntry entry) {
+        updates.put(path + "/level", entry.getLevel());
+        updates.put(path + "/xp", entry.getXp());
+        updates.put(path + "/completedTasks", entry.getCompletedTasks());
+        updates.put(path + "/updatedAt", entry.getUpdatedAt());
+    }
+
+    // Firebase keys cannot contain . # $ [ ] or /
+    private static String toKey(String group) {
+        return group.replaceAll("[.#$\\[\\]/]", "_");
+    }
+
+    private void fetch(String path, Callback callback) {
+        read(database -> database.getReference(path), callback, new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                List<LeaderboardEntry> entries = parseEntries(snapshot);
+                entries.sort(LeaderboardEntry.RANKING);
+                callback.onLoaded(entries);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                callback.onError(error.getMessage());
+            }
+        });
+    }
+
+    private static List<LeaderboardEntry> parseEntries(DataSnapshot snapshot) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String username = child.getKey();
+            Integer level = child.child("level").getValue(Integer.class);
+            Integer xp = child.child("xp").getValue(Integer.class);
+            Integer completedTasks = child.child("completedTasks").getValue(Integer.class);
+            Long updatedAt = child.child("updatedAt").getValue(Long.class);
+
+            if (username != null && level != null && xp != null && completedTasks != null) {
+                entries.add(new LeaderboardEntry(username, level, xp, completedTasks,
+                        updatedAt != null ? updatedAt : 0L));
+            }
+        }
+        return entries;
+    }
+}
\ No newline at end of file
@@ -1,13 +1,26 @@
 package ui;//ui->GlobalLeaderboardScreen
-import com.google.firebase.database.*;
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+import models.User;
+import util.DataManager;
+import util.LeaderboardCache;
+import util.LeaderboardService;
+import util.LeaderboardServices;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 public class GlobalLeaderboardScreen extends JFrame {
+    private final LeaderboardCache cache = LeaderboardCache.getInstance();
+    private final JLabel statusLabel = new JLabel(" ", SwingConstants.CENTER);
+    private final JComboBox<String> boardSelector = new JComboBox<>();
+    private static final String GLOBAL_BOARD = "🌍 Global";
 
     public GlobalLeaderboardScreen() {
         setTitle("🌍 Global Leaderboard");
@@ -24,7 +37,34 @@ public class GlobalLeaderboardScreen extends JFrame {
         titleLabel.setBackground(new Color(199, 21, 133)); // Dark pink
         titleLabel.setBorder(BorderFactory.createLineBorder(Color.WHITE, 2));
         titleLabel.setPreferredSize(new Dimension(700, 50));
-        add(titleLabel, BorderLayout.NORTH);
+
+        // Global board, the time-windowed boards, then one board per group the current user belongs to
+        boardSelector.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        boardSelector.addItem(GLOBAL_BOARD);
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            boardSelector.addItem(window.getLabel());
+        }
+        User user = MainMenu.getCurrentUser();
+        if (user != null) {
+            for (String group : user.getGroups()) {
+                boardSelector.addItem(group);
+            }
+        }
+        JButton joinGroupBtn = createStyledButton("➕ Join Group");
+        joinGroupBtn.setEnabled(user != null);
+        joinGroupBtn.addActionListener(e -> joinGroup(user));
+
+        JPanel boardPanel = new JPanel();
+        boardPanel.setOpaque(false);
+        boardPanel.add(new JLabel("Board:"));
+        boardPanel.add(boardSelector);
+        boardPanel.add(joinGroupBtn);
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.setOpaque(false);
+        topPanel.add(titleLabel, BorderLayout.NORTH);
+        topPanel.add(boardPanel, BorderLayout.SOUTH);
+        add(topPanel, BorderLayout.NORTH);
 
         String[] columns = {"🏅 Rank", "👤 Username", "🧪 Level", "⭐ XP", "✅ Tasks"};
         DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
@@ -55,64 +95,157 @@ public class GlobalLeaderboardScreen extends JFrame {
         JButton closeBtn = createStyledButton("❌ Close");
         closeBtn.addActionListener(e -> dispose());
 
-        JPanel bottomPanel = new JPanel();
+        statusLabel.setFont(new Font("Monospaced", Font.PLAIN, 12));
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
         bottomPanel.setOpaque(false);
         bottomPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        bottomPanel.add(closeBtn);
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(closeBtn);
+        bottomPanel.add(statusLabel, BorderLayout.NORTH);
+        bottomPanel.add(buttonPanel, BorderLayout.CENTER);
         add(bottomPanel, BorderLayout.SOUTH);
 
-        loadLeaderboardData(tableModel);
+        boardSelector.addActionListener(e -> showBoard(tableModel));
+        showBoard(tableModel);
 
         setVisible(true);
     }
 
-    private void loadLeaderboardData(DefaultTableModel tableModel) {
-        DatabaseReference ref = FirebaseDatabase.getInstance().getReference("leaderboard");
+    private void showBoard(DefaultTableModel tableModel) {
+        String board = (String) boardSelector.getSelectedItem();
+        if (board == null || GLOBAL_BOARD.equals(board)) {
+            // Show the saved copy straight away, then bring it up to date in the background
+            showEntries(tableModel, cache.getRanked());
+            statusLabel.setText(cache.isEmpty() ? "Loading leaderboard..." : "Showing saved leaderboard, checking for updates...");
+            loadLeaderboardData(tableModel);
+            return;
+        }
 
-        ref.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                List<UserData> users = new ArrayList<>();
+        tableModel.setRowCount(0);
+        statusLabel.setText("Loading " + board + "...");
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            if (window.getLabel().equals(board)) {
+                loadWindowData(tableModel, window);
+                return;
+            }
+        }
+        loadGroupData(tableModel, board);
+    }
 
-                for (DataSnapshot child : snapshot.getChildren()) {
-                    String username = child.getKey();
-                    Integer level = child.child("level").getValue(Integer.class);
-                    Integer xp = child.child("xp").getValue(Integer.class);
-                    Integer completedTasks = child.child("completedTasks").getValue(Integer.class);
+    // Ranked by XP gained in the window, which is what the XP column shows
+    private void loadWindowData(DefaultTableModel tableModel, LeaderboardWindow window) {
+        LeaderboardServices.getDefault().fetchWindow(window, new LeaderboardService.Callback() {
+            @Override
+            public void onLoaded(List<LeaderboardEntry> entries) {
+                SwingUtilities.invokeLater(() -> {
+                    if (!window.getLabel().equals(boardSelector.getSelectedItem())) return; // Switched boards meanwhile
+                    showEntries(tableModel, entries);
+                    statusLabel.setText("Ranked by XP gained: " + window.getLabel());
+                });
+            }
 
-                    if (username != null && level != null && xp != null && completedTasks != null) {
-                        users.add(new UserData(username, level, xp, completedTasks));
-                    }
-                }
+            @Override
+            public void onError(String message) {
+                System.out.println("Windowed leaderboard unavailable: " + message);
+                SwingUtilities.invokeLater(() -> statusLabel.setText("⚠️ " + window.getLabel() + " is unavailable right now."));
+            }
+        });
+    }
 
-                // Sort by level, then XP
-                users.sort((u1, u2) -> {
-                    if (u2.getLevel() != u1.getLevel()) {
-                        return Integer.compare(u2.getLevel(), u1.getLevel());
-                    } else {
-                        return Integer.compare(u2.getXp(), u1.getXp());
-                    }
+    // Group boards are small, so they are fetched whole and not cached
+    private void loadGroupData(DefaultTableModel tableModel, String group) {
+        LeaderboardServices.getDefault().fetchGroup(group, new LeaderboardService.Callback() {
+            @Override
+            public void onLoaded(List<LeaderboardEntry> entries) {
+                SwingUtilities.invokeLater(() -> {
+                    if (!group.equals(boardSelector.getSelectedItem())) return; // Switched boards meanwhile
+                    showEntries(tableModel, entries);
+                    statusLabel.setText(entries.size() + " members in " + group);
                 });
+            }
+
+            @Override
+            public void onError(String message) {
+                System.out.println("Group leaderboard unavailable: " + message);
+                SwingUtilities.invokeLater(() -> statusLabel.setText("⚠️ " + group + " is unavailable right now."));
+            }
+        });
+    }
+
+    private void joinGroup(User user) {
+        String group = JOptionPane.showInputDialog(this, "Group or class code:");
+        if (group == null || group.trim().isEmpty()) return;
+        group = group.trim();
+
+        if (user.joinGroup(group)) {
+            DataManager.saveUser(user);
+            boardSelector.addItem(group);
+        }
+        // Publish our stats right away so the group board includes us
+        LeaderboardServices.getDefault().submitToGroups(LeaderboardEntry.fromUser(user), List.of(group));
+        boardSelector.setSelectedItem(group);
+    }
+
+    private void loadLeaderboardData(DefaultTableModel tableModel) {
+        LeaderboardServices.getDefault().fetchAll(new LeaderboardService.Callback() {
+            @Override
+            public void onLoaded(List<LeaderboardEntry> remote) {
+                // Merge off the EDT and only rewrite the file/table if something changed
+                boolean changed = cache.reconcile(remote);
+                if (changed) {
+                    cache.save();
+                } else {
+                    cache.saveSyncedAt();
+                }
+                List<LeaderboardEntry> ranked = cache.getRanked();
 
                 SwingUtilities.invokeLater(() -> {
-                    tableModel.setRowCount(0); // clear table
-                    int rank = 1;
-                    for (UserData user : users) {
-                        tableModel.addRow(new Object[]{
-                                rank++, user.getUsername(), user.getLevel(), user.getXp(), user.getCompletedTasks()
-                        });
+                    if (!GLOBAL_BOARD.equals(boardSelector.getSelectedItem())) return;
+                    if (changed) {
+                        showEntries(tableModel, ranked);
                     }
+                    statusLabel.setText("Up to date as of " + formatTime(cache.getSyncedAt()));
                 });
             }
 
             @Override
-            public void onCancelled(DatabaseError error) {
-                JOptionPane.showMessageDialog(GlobalLeaderboardScreen.this,
-                        "Failed to load leaderboard data.", "Error", JOptionPane.ERROR_MESSAGE);
+            public void onError(String message) {
+                System.out.println("Leaderboard unavailable: " + message);
+                showOffline();
             }
         });
     }
 
+    private void showOffline() {
+        SwingUtilities.invokeLater(() -> {
+            if (!GLOBAL_BOARD.equals(boardSelector.getSelectedItem())) return;
+            if (cache.isEmpty()) {
+                statusLabel.setText("⚠️ Leaderboard unavailable right now.");
+            } else if (cache.getSyncedAt() > 0) {
+                statusLabel.setText("⚠️ Offline, showing leaderboard saved " + formatTime(cache.getSyncedAt()));
+            } else {
+                statusLabel.setText("⚠️ Offline, showing saved leaderboard");
+            }
+        });
+    }
+
+    private void showEntries(DefaultTableModel tableModel, List<LeaderboardEntry> entries) {
+        tableModel.setRowCount(0); // clear table
+        int rank = 1;
+        for (LeaderboardEntry entry : entries) {
+            tableModel.addRow(new Object[]{
+                    rank++, entry.getUsername(), entry.getLevel(), entry.getXp(), entry.getCompletedTasks()
+            });
+        }
+    }
+
+    private String formatTime(long epochMillis) {
+        return DateTimeFormatter.ofPattern("MMM d, HH:mm")
+                .format(Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()));
+    }
+
     private JButton createStyledButton(String text) {
         JButton button = new JButton(text);
         button.setFocusPainted(false);
@@ -122,24 +255,4 @@ public class GlobalLeaderboardScreen extends JFrame {
         button.setBorder(BorderFactory.createLineBorder(Color.BLACK, 2));
         return button;
     }
-
-    // Helper class
-    private static class UserData {
-        private final String username;
-        private final int level;
-        private final int xp;
-        private final int completedTasks;
-
-        public UserData(String username, int level, int xp, int completedTasks) {
-            this.username = username;
-            this.level = level;
-            this.xp = xp;
-            this.completedTasks = completedTasks;
-        }
-
-        public String getUsername() { return username; }
-        public int getLevel() { return level; }
-        public int getXp() { return xp; }
-        public int getCompletedTasks() { return completedTasks; }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+//util->GroupLeaderboards
+package util;
+
+import models.LeaderboardEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leaderboards split into independent ranked indexes.
+ * Every user lives in one of a fixed number of stripes (picked by username hash),
+ * so updates for different users rarely wait on the same lock. Groups (a class,
+ * a study group, a multiplayer session) get their own small index, so group
+ * queries never look at anyone outside the group. The global view is produced
+ * by merging the stripes' top entries rather than sorting every user, and a
+ * global rank is found by narrowing down candidates in every stripe at once.
+ */
+public class GroupLeaderboards {
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final RankedIndex[] stripes;
+    private final ConcurrentHashMap<String, RankedIndex> groups = new ConcurrentHashMap<>();
+
+    public GroupLeaderboards() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public GroupLeaderboards(int stripeCount) {
+        stripes = new RankedIndex[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new RankedIndex();
+        }
+    }
+
+    private RankedIndex stripeFor(String username) {
+        return stripes[Math.floorMod(username.hashCode(), stripes.length)];
+    }
+
+    // Returns false if the entry was older than the stored one
+    public boolean submit(LeaderboardEntry entry) {
+        return stripeFor(entry.getUsername()).putIfNotOlder(entry);
+    }
+
+    public boolean submitToGroup(String group, LeaderboardEntry entry) {
+        return groups.computeIfAbsent(group, g -> new RankedIndex()).putIfNotOlder(entry);
+    }
+
+    public void removeFromGroup(String group, String username) {
+        RankedIndex index = groups.get(group);
+        if (index != null) {
+            index.remove(username);
+        }
+    }
+
+    public LeaderboardEntry get(String username) {
+        return stripeFor(username).get(username);
+    }
+
+    public int size() {
+        int size = 0;
+        for (RankedIndex stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    // Global rank: how many entries rank ahead of the user in every stripe, plus one
+    public int rankOf(String username) {
+        LeaderboardEntry entry = get(username);
+        if (entry == null) return -1;
+        int before = 0;
+        for (RankedIndex stripe : stripes) {
+            before += stripe.rankFor(entry) - 1;
+        }
+        return before + 1;
+    }
+
+    // Global top entries, merged from each stripe's own top entries
+    public List<LeaderboardEntry> top(int count) {
+        List<List<LeaderboardEntry>> parts = new ArrayList<>(stripes.length);
+        for (RankedIndex stripe : stripes) {
+            parts.add(stripe.top(count));
+        }
+        return merge(parts, count);
+    }
+
+    public List<LeaderboardEntry> toList() {
+        List<List<LeaderboardEntry>> parts = new ArrayList<>(stripes.length);
+        for (RankedIndex stripe : stripes) {
+            parts.add(stripe.toList());
+        }
+        return merge(parts, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Entry at the given global rank, or null if there are fewer entries.
+     * Each stripe keeps a range of positions the answer could be at. The middle of
+     * the widest range is a pivot; counting the entries ahead of it in every stripe
+     * gives its global rank, which cuts every range down to the side the answer is
+     * on. That is O(stripes² · log² n) at worst, however deep the rank, where
+     * merging the stripes' top entries would walk through all rank of them.
+     */
+    public LeaderboardEntry kth(int rank) {
+        if (rank < 1) return null;
+        int[] lo = new int[stripes.length]; // Candidate positions in each stripe, 1-based and inclusive
+        int[] hi = new int[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            lo[i] = 1;
+            hi[i] = stripes[i].size();
+        }
+        int[] before = new int[stripes.length];
+        while (true) {
+            int widest = -1;
+            for (int i = 0; i < stripes.length; i++) {
+                if (lo[i] <= hi[i] && (widest < 0 || hi[i] - lo[i] > hi[widest] - lo[widest])) widest = i;
+            }
+            if (widest < 0) return null;
+
+            int position = (lo[widest] + hi[widest]) >>> 1;
+            LeaderboardEntry pivot = stripes[widest].kth(position);
+            if (pivot == null) { // The stripe shrank since its size was read
+                hi[widest] = position - 1;
+                continue;
+            }
+            int pivotRank = 1;
+            for (int i = 0; i < stripes.length; i++) {
+                before[i] = i == widest ? position - 1 : stripes[i].rankFor(pivot) - 1;
+                pivotRank += before[i];
+            }
+            if (pivotRank == rank) return pivot;
+            for (int i = 0; i < stripes.length; i++) {
+                if (pivotRank < rank) {
+                    lo[i] = Math.max(lo[i], before[i] + 1 + (i == widest ? 1 : 0));
+                } else {
+                    hi[i] = Math.min(hi[i], before[i]);
+                }
+            }
+        }
+    }
+
+    // Up to count entries starting at the given global rank, in rank order
+    public List<LeaderboardEntry> range(int fromRank, int count) {
+        LeaderboardEntry first = kth(Math.max(1, fromRank));
+        if (first == null || count <= 0) return new ArrayList<>();
+        List<List<LeaderboardEntry>> parts = new ArrayList<>(stripes.length);
+        for (RankedIndex stripe : stripes) {
+            parts.add(stripe.range(stripe.rankFor(first), count));
+        }
+        return merge(parts, count);
+    }
+
+    public List<LeaderboardEntry> neighbors(String username, int radius) {
+        int rank = rankOf(username);
+        if (rank < 0) return new ArrayList<>();
+        int from = Math.max(1, rank - radius);
+        return range(from, rank + radius - from + 1);
+    }
+
+    public Set<String> getGroupNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(groups.keySet()));
+    }
+
+    public List<LeaderboardEntry> groupRanked(String group) {
+        RankedIndex index = groups.get(group);
+        return index == null ? new ArrayList<>() : index.toList();
+    }
+
+    public List<LeaderboardEntry> groupTop(String group, int count) {
+        RankedIndex index = groups.get(group);
+        return index == null ? new ArrayList<>() : index.top(count);
+    }
+
+    public int groupRankOf(String group, String username) {
+        RankedIndex index = groups.get(group);
+        return index == null ? -1 : index.rankOf(username);
+    }
+
+    // K-way merge of lists that are each already in rank order
+    private static List<LeaderboardEntry> merge(List<List<LeaderboardEntry>> parts, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                LeaderboardEntry.RANKING.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+                total += parts.get(i).size();
+            }
+        }
+
+        List<LeaderboardEntry> merged = new ArrayList<>(Math.min(total, limit));
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<LeaderboardEntry> part = parts.get(head[0]);
+            merged.add(part.get(head[1]));
+            if (head[1] + 1 < part.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,118 @@
+//util->HttpLeaderboardService
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Talks to a LocalLeaderboardService served over HTTP on another machine
+public class HttpLeaderboardService implements LeaderboardService {
+    private final URI endpoint;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .build();
+    private final Gson gson = new Gson();
+
+    public HttpLeaderboardService(String baseUrl) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.endpoint = URI.create(base + "/leaderboard");
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(LeaderboardEntry entry) {
+        return submitAll(List.of(entry));
+    }
+
+    @Override
+    public CompletableFuture<Void> submitAll(List<LeaderboardEntry> entries) {
+        return post(endpoint, entries);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitToGroups(LeaderboardEntry entry, Collection<String> groups) {
+        List<CompletableFuture<Void>> posts = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            posts.add(post(groupEndpoint(group), List.of(entry)));
+        }
+        return CompletableFuture.allOf(posts.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Sent as an entry whose xp is the day's total
+    @Override
+    public CompletableFuture<Void> submitDailyXp(LeaderboardEntry entry, long epochDay, int dayXp) {
+        LeaderboardEntry gained = new LeaderboardEntry(entry.getUsername(), entry.getLevel(), dayXp,
+                entry.getCompletedTasks(), entry.getUpdatedAt());
+        return post(URI.create(endpoint + "?day=" + epochDay), List.of(gained));
+    }
+
+    @Override
+    public void fetchAll(Callback callback) {
+        get(endpoint, callback);
+    }
+
+    @Override
+    public void fetchWindow(LeaderboardWindow window, Callback callback) {
+        get(URI.create(endpoint + "?window=" + window.name().toLowerCase()), callback);
+    }
+
+    @Override
+    public void fetchGroup(String group, Callback callback) {
+        get(groupEndpoint(group), callback);
+    }
+
+    private URI groupEndpoint(String group) {
+        return URI.create(endpoint + "?group=" + URLEncoder.encode(group, StandardCharsets.UTF_8));
+    }
+
+    // Fails if the request can't be sent or the server doesn't accept it
+    private CompletableFuture<Void> post(URI uri, List<LeaderboardEntry> entries) {
+        if (entries.isEmpty()) return CompletableFuture.completedFuture(null);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(entries)))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenAccept(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("Leaderboard server returned " + response.statusCode());
+                    }
+                });
+    }
+
+    private void get(URI uri, Callback callback) {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        callback.onError(error.getMessage());
+                    } else if (response.statusCode() != 200) {
+                        callback.onError("Leaderboard server returned " + response.statusCode());
+                    } else {
+                        List<LeaderboardEntry> entries;
+                        try {
+                            entries = gson.fromJson(response.body(), new TypeToken<List<LeaderboardEntry>>() {}.getType());
+                        } catch (RuntimeException e) { // Malformed JSON
+                            callback.onError("Leaderboard server sent an unreadable response");
+                            return;
+                        }
+                        // A body of "null" is no entries; entries without a username are skipped
+                        if (entries == null) entries = new ArrayList<>();
+                        entries.removeIf(entry -> entry == null || entry.getUsername() == null);
+                        callback.onLoaded(entries);
+                    }
+                });
+    }
+}
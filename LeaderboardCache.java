@@ -0,0 +1,212 @@
+//util->LeaderboardCache
+package util;
+
+import models.LeaderboardEntry;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local copy of the global leaderboard, kept in a small binary file under data/
+ * so the leaderboard can be shown instantly (and offline) before the remote
+ * data arrives. Remote snapshots are merged in with per-entry timestamps.
+ */
+public class LeaderboardCache {
+    private static final String CACHE_FILE = "data/leaderboard.cache";
+    private static final int MAGIC = 0x534C4C42; // "SLLB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SYNCED_AT_OFFSET = 4 + 1 + 8; // After the magic, format version and data version
+
+    private static LeaderboardCache instance;
+
+    private final File file;
+    private final RankedIndex index = new RankedIndex(); // Entries in rank order, with O(log n) rank queries
+    private long version;   // Bumped on every change to the cached data
+    private long syncedAt;  // When the last remote snapshot was merged, 0 if never
+
+    public LeaderboardCache(File file) {
+        this.file = file;
+    }
+
+    public static synchronized LeaderboardCache getInstance() {
+        if (instance == null) {
+            instance = new LeaderboardCache(new File(CACHE_FILE));
+            instance.load();
+        }
+        return instance;
+    }
+
+    // Reads the cache file on a background thread, so the first getInstance() on the EDT finds it loaded
+    public static void preload() {
+        Thread thread = new Thread(LeaderboardCache::getInstance, "leaderboard-cache-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized List<LeaderboardEntry> getRanked() {
+        return index.toList();
+    }
+
+    // 1-based rank of a user as currently cached, or -1 if not cached
+    public synchronized int rankOf(String username) {
+        return index.rankOf(username);
+    }
+
+    // Rank the given stats would have against everyone else in the cache
+    public synchronized int rankFor(LeaderboardEntry entry) {
+        return index.rankFor(entry);
+    }
+
+    public synchronized LeaderboardEntry kth(int rank) {
+        return index.kth(rank);
+    }
+
+    public synchronized List<LeaderboardEntry> neighbors(String username, int radius) {
+        return index.neighbors(username, radius);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized long getSyncedAt() {
+        return syncedAt;
+    }
+
+    public synchronized boolean isEmpty() {
+        return index.size() == 0;
+    }
+
+    // Record a local write (e.g. our own stats upload) so it shows before the remote catches up
+    public synchronized void update(LeaderboardEntry entry) {
+        if (index.putIfNotOlder(entry)) {
+            version++;
+        }
+    }
+
+    /**
+     * Merges a full remote snapshot into the cache.
+     * A remote entry replaces the cached one unless the cached one is newer;
+     * entries missing remotely are dropped unless they were written locally
+     * after the previous sync. Returns true if anything changed.
+     */
+    public synchronized boolean reconcile(Collection<LeaderboardEntry> remote) {
+        long previousSync = syncedAt;
+        boolean changed = false;
+        Map<String, LeaderboardEntry> seen = new HashMap<>();
+
+        for (LeaderboardEntry entry : remote) {
+            seen.put(entry.getUsername(), entry);
+            LeaderboardEntry current = index.get(entry.getUsername());
+            if (current == null || (entry.getUpdatedAt() >= current.getUpdatedAt() && !entry.sameStats(current))) {
+                index.put(entry);
+                changed = true;
+            }
+        }
+
+        for (LeaderboardEntry entry : index.toList()) {
+            if (!seen.containsKey(entry.getUsername()) && entry.getUpdatedAt() <= previousSync) {
+                index.remove(entry.getUsername());
+                changed = true;
+            }
+        }
+
+        syncedAt = System.currentTimeMillis();
+        if (changed) version++;
+        return changed;
+    }
+
+    public synchronized void load() {
+        index.clear();
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                System.out.println("Ignoring leaderboard cache with unknown format");
+                return;
+            }
+            version = in.readLong();
+            syncedAt = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                index.put(readEntry(in));
+            }
+        } catch (IOException e) {
+            // A damaged cache is not fatal, the remote data will refill it
+            e.printStackTrace();
+            index.clear();
+        }
+    }
+
+    public synchronized void save() {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(version);
+            out.writeLong(syncedAt);
+            List<LeaderboardEntry> entries = index.toList();
+            out.writeInt(entries.size());
+            for (LeaderboardEntry entry : entries) {
+                writeEntry(out, entry);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        replaceAtomically(temp, file);
+    }
+
+    // Persist a sync that left the entries as they were: only the sync time in the
+    // header changes, so it is written in place rather than rewriting every entry
+    public synchronized void saveSyncedAt() {
+        if (file.exists()) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                if (out.length() >= SYNCED_AT_OFFSET + 8 && out.readInt() == MAGIC && out.readByte() == FORMAT_VERSION
+                        && out.readLong() == version) {
+                    out.writeLong(syncedAt);
+                    return;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // No file yet, or it holds other data: write it all
+        save();
+    }
+
+    // Entry layout shared with LocalLeaderboardService's store
+    static void writeEntry(DataOutputStream out, LeaderboardEntry entry) throws IOException {
+        out.writeUTF(entry.getUsername());
+        out.writeInt(entry.getLevel());
+        out.writeInt(entry.getXp());
+        out.writeInt(entry.getCompletedTasks());
+        out.writeLong(entry.getUpdatedAt());
+    }
+
+    static LeaderboardEntry readEntry(DataInputStream in) throws IOException {
+        return new LeaderboardEntry(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readLong());
+    }
+
+    // Replace the old file in one step so a crash never leaves half a file
+    static void replaceAtomically(File temp, File target) {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
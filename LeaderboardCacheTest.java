@@ -0,0 +1,197 @@
+//util->LeaderboardCacheTest
+package util;
+
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Checks the local leaderboard copy against a LocalLeaderboardService standing in
+ * for the remote: saving and loading, merging snapshots by updatedAt, keeping the
+ * sync time when nothing changed, and serving the saved copy while offline.
+ * Exits with an error on the first failed check.
+ * Usage: java util.LeaderboardCacheTest
+ */
+public class LeaderboardCacheTest {
+
+    // The remote, which can be switched off to simulate having no connection
+    private static class Remote implements LeaderboardService {
+        private final LocalLeaderboardService service;
+        private boolean online = true;
+
+        Remote(LocalLeaderboardService service) {
+            this.service = service;
+        }
+
+        @Override
+        public CompletableFuture<Void> submit(LeaderboardEntry entry) {
+            return service.submit(entry);
+        }
+
+        @Override
+        public CompletableFuture<Void> submitToGroups(LeaderboardEntry entry, Collection<String> groups) {
+            return service.submitToGroups(entry, groups);
+        }
+
+        @Override
+        public CompletableFuture<Void> submitDailyXp(LeaderboardEntry entry, long epochDay, int dayXp) {
+            return service.submitDailyXp(entry, epochDay, dayXp);
+        }
+
+        @Override
+        public void fetchAll(Callback callback) {
+            if (online) service.fetchAll(callback);
+            else callback.onError("offline");
+        }
+
+        @Override
+        public void fetchGroup(String group, Callback callback) {
+            if (online) service.fetchGroup(group, callback);
+            else callback.onError("offline");
+        }
+
+        @Override
+        public void fetchWindow(LeaderboardWindow window, Callback callback) {
+            if (online) service.fetchWindow(window, callback);
+            else callback.onError("offline");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("leaderboard-cache-test").toFile();
+        File cacheFile = new File(dir, "leaderboard.cache");
+        LocalLeaderboardService service = new LocalLeaderboardService(new File(dir, "leaderboard-local.db"));
+        Remote remote = new Remote(service);
+        long now = System.currentTimeMillis();
+        try {
+            // Load and save: a missing or damaged file is an empty cache, a saved one comes back as it was
+            LeaderboardCache cache = new LeaderboardCache(cacheFile);
+            cache.load();
+            check(cache.isEmpty() && cache.getSyncedAt() == 0, "missing cache file did not load empty");
+            try (FileOutputStream out = new FileOutputStream(cacheFile)) {
+                out.write("not a leaderboard cache".getBytes());
+            }
+            cache.load();
+            check(cache.isEmpty(), "damaged cache file was not ignored");
+
+            remote.submit(new LeaderboardEntry("alice", 5, 40, 12, now - 5000));
+            remote.submit(new LeaderboardEntry("bob", 3, 10, 7, now - 5000));
+            remote.submit(new LeaderboardEntry("carol", 7, 90, 30, now - 5000));
+            check(sync(remote, cache), "first sync reported no change");
+            check(names(cache.getRanked()).equals(List.of("carol", "alice", "bob")), "not in rank order: " + names(cache.getRanked()));
+            LeaderboardCache reloaded = reload(cacheFile);
+            check(names(reloaded.getRanked()).equals(names(cache.getRanked())), "entries changed across save and load");
+            check(reloaded.getVersion() == cache.getVersion() && reloaded.getSyncedAt() == cache.getSyncedAt(),
+                    "version or sync time changed across save and load");
+            System.out.println("✅ load and save");
+
+            // A newer remote entry replaces the cached one; an older one does not
+            Thread.sleep(5);
+            cache.update(new LeaderboardEntry("bob", 9, 0, 50, now)); // Our own upload, not on the remote yet
+            remote.submit(new LeaderboardEntry("alice", 8, 20, 25, now - 1000));
+            sync(remote, cache);
+            check(cache.kth(1).getUsername().equals("bob") && cache.kth(1).getLevel() == 9,
+                    "older remote entry replaced a newer local one");
+            check(cache.rankOf("alice") == 2 && cache.kth(2).getLevel() == 8, "newer remote entry was not taken");
+            remote.submit(new LeaderboardEntry("carol", 6, 0, 31, now - 5000)); // Same updatedAt as the cached one
+            sync(remote, cache);
+            check(cache.kth(3).getUsername().equals("carol") && cache.kth(3).getLevel() == 6,
+                    "remote entry with the same updatedAt did not win");
+            System.out.println("✅ updatedAt ordering");
+
+            // Missing remotely: dropped if the cache already had it at the last sync, kept if written since
+            service.close();
+            service = new LocalLeaderboardService(new File(dir, "leaderboard-other.db"));
+            remote = new Remote(service);
+            Thread.sleep(5);
+            LeaderboardEntry dave = new LeaderboardEntry("dave", 2, 5, 1, System.currentTimeMillis());
+            cache.update(dave);
+            check(sync(remote, cache), "dropping entries reported no change");
+            check(names(cache.getRanked()).equals(List.of("dave")), "wrong entries after a sync with missing users: "
+                    + names(cache.getRanked()));
+            System.out.println("✅ entries missing remotely");
+
+            // A sync that changes nothing still records when it happened
+            remote.submit(dave);
+            sync(remote, cache);
+            long before = cache.getSyncedAt();
+            Thread.sleep(5);
+            check(!sync(remote, cache), "unchanged snapshot reported a change");
+            check(cache.getSyncedAt() > before, "sync time did not advance");
+            reloaded = reload(cacheFile);
+            check(reloaded.getSyncedAt() == cache.getSyncedAt(), "sync time of an unchanged sync was not saved");
+            check(names(reloaded.getRanked()).equals(List.of("dave")), "saving the sync time damaged the entries");
+            System.out.println("✅ sync time saved without changes");
+
+            // Offline: a fresh start serves the saved copy and when it was synced
+            remote.online = false;
+            LeaderboardCache offline = reload(cacheFile);
+            boolean[] failed = {false};
+            remote.fetchAll(new LeaderboardService.Callback() {
+                @Override
+                public void onLoaded(List<LeaderboardEntry> entries) {
+                    offline.reconcile(entries);
+                }
+
+                @Override
+                public void onError(String message) {
+                    failed[0] = true;
+                }
+            });
+            check(failed[0], "offline remote did not report an error");
+            check(names(offline.getRanked()).equals(List.of("dave")) && offline.getSyncedAt() == cache.getSyncedAt(),
+                    "offline start did not serve the saved copy");
+            check(offline.rankFor(new LeaderboardEntry("erin", 3, 0, 0, now)) == 1, "offline rank lookup failed");
+            System.out.println("✅ offline fallback");
+        } finally {
+            service.close();
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    // What the leaderboard screen and main menu do with a fetched snapshot; true if it changed the cache
+    private static boolean sync(LeaderboardService remote, LeaderboardCache cache) {
+        boolean[] changed = {false};
+        remote.fetchAll(new LeaderboardService.Callback() {
+            @Override
+            public void onLoaded(List<LeaderboardEntry> entries) {
+                changed[0] = cache.reconcile(entries);
+                if (changed[0]) {
+                    cache.save();
+                } else {
+                    cache.saveSyncedAt();
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                throw new AssertionError("remote unavailable: " + message);
+            }
+        });
+        return changed[0];
+    }
+
+    private static LeaderboardCache reload(File file) throws IOException {
+        LeaderboardCache cache = new LeaderboardCache(file);
+        cache.load();
+        return cache;
+    }
+
+    private static List<String> names(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getUsername).toList();
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) throw new AssertionError(failure);
+    }
+}
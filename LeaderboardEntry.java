@@ -0,0 +1,45 @@
+//models->LeaderboardEntry
+package models;
+
+import java.util.Comparator;
+
+// One row of the leaderboard: a user's published stats and when they were last updated
+public class LeaderboardEntry {
+    // Highest level first, then XP, then completed tasks; username keeps the order total
+    public static final Comparator<LeaderboardEntry> RANKING = Comparator
+            .comparingInt(LeaderboardEntry::getLevel).reversed()
+            .thenComparing(Comparator.comparingInt(LeaderboardEntry::getXp).reversed())
+            .thenComparing(Comparator.comparingInt(LeaderboardEntry::getCompletedTasks).reversed())
+            .thenComparing(LeaderboardEntry::getUsername);
+
+    private final String username;
+    private final int level;
+    private final int xp;
+    private final int completedTasks;
+    private final long updatedAt; // Epoch millis, 0 if unknown
+
+    public LeaderboardEntry(String username, int level, int xp, int completedTasks, long updatedAt) {
+        this.username = username;
+        this.level = level;
+        this.xp = xp;
+        this.completedTasks = completedTasks;
+        this.updatedAt = updatedAt;
+    }
+
+    public static LeaderboardEntry fromUser(User user) {
+        return new LeaderboardEntry(user.getUsername(), user.getLevel(), user.getXp(),
+                user.getTotalCompletedTasks(), System.currentTimeMillis());
+    }
+
+    public String getUsername() { return username; }
+    public int getLevel() { return level; }
+    public int getXp() { return xp; }
+    public int getCompletedTasks() { return completedTasks; }
+    public long getUpdatedAt() { return updatedAt; }
+
+    // Same stats, ignoring the timestamp
+    public boolean sameStats(LeaderboardEntry other) {
+        return other != null && username.equals(other.username) && level == other.level
+                && xp == other.xp && completedTasks == other.completedTasks;
+    }
+}
@@ -0,0 +1,54 @@
+//util->LeaderboardService
+package util;
+
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where leaderboard stats are published and read from.
+ * Implementations: firebase.FirebaseLeaderboardService (the hosted database),
+ * LocalLeaderboardService (in-process, self-hosted) and HttpLeaderboardService
+ * (a LocalLeaderboardService running on another machine).
+ */
+public interface LeaderboardService {
+
+    interface Callback {
+        // Called with every entry, ranked
+        void onLoaded(List<LeaderboardEntry> entries);
+
+        void onError(String message);
+    }
+
+    // Writes may finish after the submit call returns; the future completes once the
+    // backend has stored the data, or exceptionally if it couldn't
+    CompletableFuture<Void> submit(LeaderboardEntry entry);
+
+    default CompletableFuture<Void> submitAll(List<LeaderboardEntry> entries) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>(entries.size());
+        for (LeaderboardEntry entry : entries) {
+            writes.add(submit(entry));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Publish the entry to each group's own leaderboard (class, study group, session)
+    CompletableFuture<Void> submitToGroups(LeaderboardEntry entry, Collection<String> groups);
+
+    // Report the XP the user has gained so far on the given (UTC epoch) day.
+    // A running total rather than a delta, so sending it again is harmless
+    CompletableFuture<Void> submitDailyXp(LeaderboardEntry entry, long epochDay, int dayXp);
+
+    // Asynchronous; the callback may run on any thread
+    void fetchAll(Callback callback);
+
+    // Like fetchAll, but only the members of one group
+    void fetchGroup(String group, Callback callback);
+
+    // Users ranked by XP gained within the window; each entry's xp is that amount
+    void fetchWindow(LeaderboardWindow window, Callback callback);
+}
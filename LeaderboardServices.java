@@ -0,0 +1,33 @@
+//util->LeaderboardServices
+package util;
+
+import firebase.FirebaseLeaderboardService;
+
+/**
+ * Picks the leaderboard backend for the whole app.
+ * Set with -Dleaderboard.backend=firebase (default), local, or http://host:port
+ */
+public class LeaderboardServices {
+    private static LeaderboardService defaultService;
+
+    public static synchronized LeaderboardService getDefault() {
+        if (defaultService == null) {
+            defaultService = create(System.getProperty("leaderboard.backend", "firebase"));
+        }
+        return defaultService;
+    }
+
+    public static synchronized void setDefault(LeaderboardService service) {
+        defaultService = service;
+    }
+
+    private static LeaderboardService create(String backend) {
+        if (backend.equalsIgnoreCase("local")) {
+            return LocalLeaderboardService.getShared();
+        }
+        if (backend.startsWith("http://") || backend.startsWith("https://")) {
+            return new HttpLeaderboardService(backend);
+        }
+        return new FirebaseLeaderboardService();
+    }
+}
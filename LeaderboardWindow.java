@@ -0,0 +1,49 @@
+//models->LeaderboardWindow
+package models;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+// Rolling time windows for leaderboards that rank XP gained recently instead of total progress
+public enum LeaderboardWindow {
+    DAILY("📅 Today", 1),
+    WEEKLY("📆 Last 7 Days", 7),
+    MONTHLY("🗓️ Last 30 Days", 30);
+
+    // The longest window; older days never count towards anything
+    public static final int MAX_DAYS = 30;
+
+    private final String label;
+    private final int days;
+
+    LeaderboardWindow(String label, int days) {
+        this.label = label;
+        this.days = days;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    // Whether XP gained on the given day still counts on the given current day
+    public boolean covers(long day, long today) {
+        return day <= today && day > today - days;
+    }
+
+    // Days are counted in UTC so every client and server agrees on when midnight is
+    public static long currentDay() {
+        return LocalDate.now(ZoneOffset.UTC).toEpochDay();
+    }
+
+    // Case-insensitive name lookup, null if there is no such window
+    public static LeaderboardWindow parse(String name) {
+        for (LeaderboardWindow window : values()) {
+            if (window.name().equalsIgnoreCase(name)) return window;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,390 @@
+//util->LocalLeaderboardService
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Self-hosted leaderboard kept in memory as striped ranked indexes plus one per group
+ * (see GroupLeaderboards), and daily/weekly/monthly boards (see WindowedLeaderboard).
+ * Updates only touch the in-memory index; a background thread writes a
+ * snapshot to disk at most once a second when something changed, so submit
+ * stays cheap under heavy load. Can also be served over HTTP for a class or
+ * team (see startHttpServer and HttpLeaderboardService).
+ *
+ * Run as a standalone server with: java util.LocalLeaderboardService [port]
+ */
+public class LocalLeaderboardService implements LeaderboardService {
+    public static final int DEFAULT_HTTP_PORT = 8085;
+    private static final String DEFAULT_FILE = "data/leaderboard-local.db";
+    private static final int MAGIC = 0x534C5333; // "SLS3": entries, then group boards, then daily buckets
+    private static final int LEGACY_MAGIC = 0x534C4C53; // "SLLS": older files, which may end after any section
+
+    private static LocalLeaderboardService shared;
+
+    private final File file;
+    private final GroupLeaderboards index = new GroupLeaderboards();
+    private final WindowedLeaderboard windows = new WindowedLeaderboard();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final Gson gson = new Gson();
+    private HttpServer httpServer;
+    private ExecutorService httpExecutor;
+
+    public LocalLeaderboardService(File file) {
+        this.file = file;
+        load();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+        // Roll the windows over shortly after midnight even if nobody is submitting
+        flusher.scheduleWithFixedDelay(this::rollover, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public static synchronized LocalLeaderboardService getShared() {
+        if (shared == null) {
+            shared = new LocalLeaderboardService(new File(DEFAULT_FILE));
+        }
+        return shared;
+    }
+
+    // Writes go to memory and are done when these return
+    @Override
+    public CompletableFuture<Void> submit(LeaderboardEntry entry) {
+        // Stale updates (older than what we have) are ignored
+        if (index.submit(entry)) {
+            dirty.set(true);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitToGroups(LeaderboardEntry entry, Collection<String> groups) {
+        for (String group : groups) {
+            if (index.submitToGroup(group, entry)) {
+                dirty.set(true);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitDailyXp(LeaderboardEntry entry, long epochDay, int dayXp) {
+        if (windows.setDailyXp(entry, epochDay, dayXp)) {
+            dirty.set(true);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void fetchAll(Callback callback) {
+        callback.onLoaded(getRanked());
+    }
+
+    @Override
+    public void fetchWindow(LeaderboardWindow window, Callback callback) {
+        callback.onLoaded(windowTop(window, Integer.MAX_VALUE));
+    }
+
+    public List<LeaderboardEntry> windowTop(LeaderboardWindow window, int limit) {
+        rollover();
+        return windows.top(window, limit);
+    }
+
+    public int windowRankOf(LeaderboardWindow window, String username) {
+        rollover();
+        return windows.rankOf(window, username);
+    }
+
+    private void rollover() {
+        long today = LeaderboardWindow.currentDay();
+        if (today > windows.getToday()) {
+            windows.advanceTo(today);
+            dirty.set(true);
+        }
+    }
+
+    @Override
+    public void fetchGroup(String group, Callback callback) {
+        callback.onLoaded(index.groupRanked(group));
+    }
+
+    public List<LeaderboardEntry> groupTop(String group, int limit) {
+        return index.groupTop(group, limit);
+    }
+
+    public int groupRankOf(String group, String username) {
+        return index.groupRankOf(group, username);
+    }
+
+    public List<LeaderboardEntry> getRanked() {
+        return index.toList();
+    }
+
+    public List<LeaderboardEntry> top(int limit) {
+        return index.top(limit);
+    }
+
+    public int rankOf(String username) {
+        return index.rankOf(username);
+    }
+
+    public LeaderboardEntry kth(int rank) {
+        return index.kth(rank);
+    }
+
+    public List<LeaderboardEntry> neighbors(String username, int radius) {
+        return index.neighbors(username, radius);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Write a snapshot if anything changed since the last one. Synchronized so the final
+    // flush on close never races the flusher thread for the temp file
+    public synchronized void flush() {
+        if (!dirty.getAndSet(false)) return;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        File temp = new File(file.getPath() + ".tmp");
+        List<LeaderboardEntry> snapshot = index.toList();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(snapshot.size());
+            for (LeaderboardEntry entry : snapshot) {
+                LeaderboardCache.writeEntry(out, entry);
+            }
+
+            // Group boards follow the global entries
+            Set<String> groupNames = index.getGroupNames();
+            out.writeInt(groupNames.size());
+            for (String group : groupNames) {
+                List<LeaderboardEntry> members = index.groupRanked(group);
+                out.writeUTF(group);
+                out.writeInt(members.size());
+                for (LeaderboardEntry entry : members) {
+                    LeaderboardCache.writeEntry(out, entry);
+                }
+            }
+
+            // Then the daily XP buckets behind the windowed boards
+            Map<Long, Map<String, Integer>> dailyXp = windows.getDailyXp();
+            out.writeInt(dailyXp.size());
+            for (Map.Entry<Long, Map<String, Integer>> day : dailyXp.entrySet()) {
+                out.writeLong(day.getKey());
+                out.writeInt(day.getValue().size());
+                for (Map.Entry<String, Integer> gained : day.getValue().entrySet()) {
+                    out.writeUTF(gained.getKey());
+                    out.writeInt(gained.getValue());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            dirty.set(true); // Try again next time
+            return;
+        }
+        LeaderboardCache.replaceAtomically(temp, file);
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != LEGACY_MAGIC) {
+                System.out.println("Ignoring local leaderboard file with unknown format");
+                return;
+            }
+            boolean legacy = magic == LEGACY_MAGIC;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                index.submit(LeaderboardCache.readEntry(in));
+            }
+
+            // Legacy files written before group boards end here
+            int groupCount = readSectionCount(in, legacy);
+            for (int i = 0; i < groupCount; i++) {
+                String group = in.readUTF();
+                int members = in.readInt();
+                for (int j = 0; j < members; j++) {
+                    index.submitToGroup(group, LeaderboardCache.readEntry(in));
+                }
+            }
+
+            // Older files end before the daily buckets; the windows show level and tasks from the global board
+            int dayCount = readSectionCount(in, legacy);
+            for (int i = 0; i < dayCount; i++) {
+                long day = in.readLong();
+                int users = in.readInt();
+                for (int j = 0; j < users; j++) {
+                    String username = in.readUTF();
+                    int xp = in.readInt();
+                    LeaderboardEntry stats = index.get(username);
+                    windows.setDailyXp(stats != null ? stats : new LeaderboardEntry(username, 1, 0, 0, 0L), day, xp);
+                }
+            }
+            System.out.println("Loaded local leaderboard with " + count + " users and " + groupCount + " groups");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // A legacy file may end where a section would start; a file cut short anywhere else is still an error
+    private static int readSectionCount(DataInputStream in, boolean legacy) throws IOException {
+        if (!legacy) return in.readInt();
+        try {
+            return in.readInt();
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Serves this leaderboard over HTTP:
+     * GET /leaderboard?limit=N returns the top entries as JSON,
+     * POST /leaderboard with a JSON array of entries submits them.
+     * Add group=NAME to either to use that group's leaderboard instead.
+     * GET with window=daily|weekly|monthly returns a time-windowed board, and
+     * POST with day=EPOCH_DAY records each entry's xp as that day's XP total.
+     */
+    public synchronized void startHttpServer(int port) throws IOException {
+        if (httpServer != null) return;
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/leaderboard", this::handleHttp);
+        httpExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        httpServer.setExecutor(httpExecutor);
+        httpServer.start();
+        System.out.println("✅ Leaderboard server listening on port " + httpServer.getAddress().getPort());
+    }
+
+    public synchronized void stopHttpServer() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+            httpExecutor.shutdown(); // Its threads aren't daemons and would keep the JVM alive
+            httpExecutor = null;
+        }
+    }
+
+    private void handleHttp(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    String query = exchange.getRequestURI().getQuery();
+                    int limit = parseLimit(query);
+                    String group = queryParam(query, "group");
+                    LeaderboardWindow window = LeaderboardWindow.parse(queryParam(query, "window"));
+                    List<LeaderboardEntry> result;
+                    if (window != null) {
+                        result = windowTop(window, limit);
+                    } else if (group != null) {
+                        result = groupTop(group, limit);
+                    } else {
+                        result = top(limit);
+                    }
+                    byte[] body = gson.toJson(result).getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+                case "POST" -> {
+                    List<LeaderboardEntry> submitted;
+                    try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                        submitted = gson.fromJson(reader, new TypeToken<List<LeaderboardEntry>>() {}.getType());
+                    } catch (RuntimeException e) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                    String query = exchange.getRequestURI().getQuery();
+                    String group = queryParam(query, "group");
+                    Long day;
+                    try {
+                        String dayParam = queryParam(query, "day");
+                        day = dayParam != null ? Long.parseLong(dayParam) : null;
+                    } catch (NumberFormatException e) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                    if (submitted != null) {
+                        for (LeaderboardEntry entry : submitted) {
+                            if (entry == null || entry.getUsername() == null) continue;
+                            if (day != null) {
+                                submitDailyXp(entry, day, entry.getXp());
+                            } else if (group != null) {
+                                submitToGroups(entry, List.of(group));
+                            } else {
+                                submit(entry);
+                            }
+                        }
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    private int parseLimit(String query) {
+        String limit = queryParam(query, "limit");
+        if (limit != null) {
+            try {
+                return Math.max(0, Integer.parseInt(limit));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) return null;
+        for (String param : query.split("&")) {
+            if (param.startsWith(name + "=")) {
+                return URLDecoder.decode(param.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        stopHttpServer();
+        flusher.shutdown();
+        try {
+            // Let a snapshot the flusher is writing finish, so the final flush sees the latest dirty flag
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_HTTP_PORT;
+        LocalLeaderboardService service = getShared();
+        Runtime.getRuntime().addShutdownHook(new Thread(service::close));
+        service.startHttpServer(port);
+    }
+}
@@ -12,6 +12,7 @@ public class LoginScreen extends JFrame {
     private final JTextField usernameField = new JTextField(15);
     private final JPasswordField passwordField = new JPasswordField(15);
     private final JLabel messageLabel = new JLabel(" ");
+    private JButton signInButton;
 
     public LoginScreen() {
         setTitle("🔐 Study Leveling - Login");
@@ -68,7 +69,7 @@ public class LoginScreen extends JFrame {
         add(messageLabel, gbc);
 
         // Buttons
-        JButton signInButton = createStyledButton("🚪 Sign In");
+        signInButton = createStyledButton("🚪 Sign In");
         JButton signUpButton = createStyledButton("🆕 Sign Up");
 
         signInButton.addActionListener(e -> signIn());
@@ -82,7 +83,16 @@ public class LoginScreen extends JFrame {
         gbc.gridy = 4;
         add(buttonPanel, gbc);
 
+        // Most launches are the same person again; their account is already being prefetched
+        String lastUser = DataManager.getLastUser();
+        if (lastUser != null) {
+            usernameField.setText(lastUser);
+        }
+
         setVisible(true);
+        if (lastUser != null) {
+            passwordField.requestFocusInWindow();
+        }
     }
 
     private JButton createStyledButton(String text) {
@@ -109,17 +119,33 @@ public class LoginScreen extends JFrame {
             return;
         }
 
-        if (!DataManager.verifyPassword(username, password)) {
+        // Check the password and read the account at the same time, off the EDT
+        signInButton.setEnabled(false);
+        DataManager.verifyPasswordAsync(username, password)
+                .thenAcceptBoth(DataManager.loadUserAsync(username), (verified, user) ->
+                        SwingUtilities.invokeLater(() -> finishSignIn(username, verified, user)))
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    SwingUtilities.invokeLater(() -> {
+                        signInButton.setEnabled(true);
+                        setMessage("⚠ Could not sign in. Please try again.", Color.RED);
+                    });
+                    return null;
+                });
+    }
+
+    private void finishSignIn(String username, boolean verified, User user) {
+        signInButton.setEnabled(true);
+        if (!verified) {
             setMessage("❗ Incorrect password!", Color.RED);
             return;
         }
-
-        User user = DataManager.loadUser(username);
         if (user == null) {
             setMessage("⚠ Could not load user data.", Color.RED);
             return;
         }
 
+        DataManager.setLastUser(username);
         setMessage("✅ Welcome back, " + username + "!", new Color(0, 128, 0));
         openMainMenu(user);
     }
@@ -138,12 +164,27 @@ public class LoginScreen extends JFrame {
             return;
         }
 
-        User newUser = new User(username);
-        DataManager.saveUser(newUser);
-        DataManager.savePassword(username, password);
-
-        setMessage("🎉 Account created!", new Color(0, 128, 0));
-        openMainMenu(newUser);
+        // Hash the password and claim the name off the EDT; the account is only written once the
+        // name is ours, so a sign-up of the same name in another instance can't overwrite it
+        setEnabled(false);
+        DataManager.savePasswordAsync(username, password).whenComplete((claimed, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    setEnabled(true);
+                    if (error != null) {
+                        error.printStackTrace();
+                        setMessage("⚠ Could not save password.", Color.RED);
+                        return;
+                    }
+                    if (!claimed) {
+                        setMessage("❗ Username already taken.", Color.RED);
+                        return;
+                    }
+                    User newUser = new User(username);
+                    DataManager.saveUser(newUser);
+                    DataManager.setLastUser(username);
+                    setMessage("🎉 Account created!", new Color(0, 128, 0));
+                    openMainMenu(newUser);
+                }));
     }
 
     private void setMessage(String msg, Color color) {
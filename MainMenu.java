@@ -2,11 +2,19 @@
 
 package ui;
 
+import models.LeaderboardEntry;
 import models.User;
-import util.FirebaseManager;
+import network.SessionServer;
+import util.DataManager;
+import util.LeaderboardCache;
+import util.LeaderboardService;
+import util.LeaderboardServices;
+import util.StatsPublisher;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainMenu extends JFrame {
     private User user;
@@ -16,6 +24,9 @@ public class MainMenu extends JFrame {
     private JLabel levelLabel;
     private JLabel xpLabel;
     private JLabel coinLabel;
+    private JLabel rankLabel;
+
+    private static final String ONLINE_OPTION = "Online";
 
     public MainMenu(User user) {
         this.user = user;
@@ -45,6 +56,10 @@ public class MainMenu extends JFrame {
         coinLabel.setBounds(570, 100, 180, 30);
         styleTopLabel(coinLabel);
 
+        rankLabel = new JLabel();
+        rankLabel.setBounds(30, 60, 200, 30);
+        styleTopLabel(rankLabel);
+
         JPanel centralPanel = new JPanel();
         centralPanel.setBounds(200, 150, 400, 420);
         centralPanel.setBackground(Color.BLACK);
@@ -78,12 +93,15 @@ public class MainMenu extends JFrame {
         add(levelLabel);
         add(xpLabel);
         add(coinLabel);
+        add(rankLabel);
         add(centralPanel);
 
         setVisible(true);
 
-        // Upload user stats to Firebase
-        FirebaseManager.uploadUserStats(user);
+        // Queue user stats for the leaderboard
+        StatsPublisher.getInstance().publish(user);
+        refreshRank();
+        refreshLeaderboardInBackground();
     }
     public User getUser() {
         return user;
@@ -93,6 +111,48 @@ public class MainMenu extends JFrame {
         levelLabel.setText("🧪 LEVEL: " + user.getLevel());
         xpLabel.setText("⭐ XP: " + user.getXp());
         coinLabel.setText("💰 COINS: " + user.getCoins());
+        refreshRank();
+    }
+
+    // Rank comes from the local leaderboard copy's ranked index, so no download or sort is needed
+    private void refreshRank() {
+        LeaderboardCache cache = LeaderboardCache.getInstance();
+        if (cache.size() <= 1) {
+            rankLabel.setText("🏅 RANK: -");
+            rankLabel.setToolTipText(null);
+            return;
+        }
+
+        int rank = cache.rankFor(LeaderboardEntry.fromUser(user));
+        rankLabel.setText("🏅 RANK: #" + rank);
+
+        StringBuilder tooltip = new StringBuilder("<html>");
+        for (LeaderboardEntry entry : cache.neighbors(user.getUsername(), 2)) {
+            tooltip.append("#").append(cache.rankOf(entry.getUsername())).append(" ")
+                    .append(entry.getUsername()).append(" (Lv ").append(entry.getLevel()).append(")<br>");
+        }
+        rankLabel.setToolTipText(tooltip.append("</html>").toString());
+    }
+
+    // Bring the local leaderboard copy up to date so the rank reflects other players too
+    private void refreshLeaderboardInBackground() {
+        LeaderboardServices.getDefault().fetchAll(new LeaderboardService.Callback() {
+            @Override
+            public void onLoaded(List<LeaderboardEntry> entries) {
+                LeaderboardCache cache = LeaderboardCache.getInstance();
+                if (cache.reconcile(entries)) {
+                    cache.save();
+                    SwingUtilities.invokeLater(() -> refreshRank());
+                } else {
+                    cache.saveSyncedAt();
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                System.out.println("Leaderboard unavailable: " + message);
+            }
+        });
     }
 
     private void styleTopLabel(JLabel label) {
@@ -115,7 +175,7 @@ public class MainMenu extends JFrame {
     }
 
     private void openMultiplayerMode() {
-        String[] options = {"2", "3", "4"};
+        String[] options = {"2", "3", "4", ONLINE_OPTION};
         String input = (String) JOptionPane.showInputDialog(
                 this,
                 "Select number of players:",
@@ -125,12 +185,50 @@ public class MainMenu extends JFrame {
                 options,
                 "2"
         );
-        if (input != null) {
+        if (ONLINE_OPTION.equals(input)) {
+            openOnlineSession();
+        } else if (input != null) {
             int numPlayers = Integer.parseInt(input);
             new MultiplayerLoginScreen(numPlayers);
         }
     }
 
+    private void openOnlineSession() {
+        String address = JOptionPane.showInputDialog(this, "Session server (host:port):",
+                "localhost:" + SessionServer.DEFAULT_PORT);
+        if (address == null || address.trim().isEmpty()) return;
+        String sessionId = JOptionPane.showInputDialog(this, "Session code:");
+        if (sessionId == null || sessionId.trim().isEmpty()) return;
+
+        String host = address.trim();
+        int port = SessionServer.DEFAULT_PORT;
+        int colon = host.lastIndexOf(':');
+        try {
+            if (colon >= 0) {
+                port = Integer.parseInt(host.substring(colon + 1));
+                host = host.substring(0, colon);
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Port must be a number.");
+            return;
+        }
+
+        // The session works on its own copy of the account, like local multiplayer
+        User participant = DataManager.loadUser(user.getUsername());
+        if (participant == null) {
+            participant = new User(user.getUsername());
+        }
+        // Everyone in the session shares a group leaderboard, for as long as the session's copy is in use
+        participant.setSessionGroup("session-" + sessionId.trim());
+        List<User> participants = new ArrayList<>();
+        participants.add(participant);
+
+        MultiplayerStudyScreen screen = new MultiplayerStudyScreen(participants, this);
+        screen.connectToSession(host, port, sessionId.trim()).thenAccept(connected -> {
+            if (!connected) screen.dispose();
+        });
+    }
+
     // Static methods to access current user and instance
     public static User getCurrentUser() {
         return currentUser;
@@ -155,9 +253,9 @@ public class MainMenu extends JFrame {
         refreshStats();
 
         // Save the updated user data
-        util.DataManager.saveUser(user);
+        DataManager.saveUser(user);
 
-        // Upload updated stats to Firebase
-        FirebaseManager.uploadUserStats(user);
+        // Queue updated stats for the leaderboard
+        StatsPublisher.getInstance().publish(user);
     }
 }
\ No newline at end of file
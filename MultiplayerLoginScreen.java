@@ -123,12 +123,27 @@ public class MultiplayerLoginScreen extends JFrame {
             return;
         }
 
-        if (!DataManager.verifyPassword(username, password)) {
+        // Check the password and read the account at the same time, off the EDT
+        setEnabled(false);
+        DataManager.verifyPasswordAsync(username, password)
+                .thenAcceptBoth(DataManager.loadUserAsync(username), (verified, user) ->
+                        SwingUtilities.invokeLater(() -> finishSignIn(verified, user)))
+                .exceptionally(error -> {
+                    error.printStackTrace();
+                    SwingUtilities.invokeLater(() -> {
+                        setEnabled(true);
+                        messageLabel.setText("⚠️ Could not sign in. Please try again.");
+                    });
+                    return null;
+                });
+    }
+
+    private void finishSignIn(boolean verified, User user) {
+        setEnabled(true);
+        if (!verified) {
             messageLabel.setText("❌ Incorrect password.");
             return;
         }
-
-        User user = DataManager.loadUser(username);
         if (user == null) {
             messageLabel.setText("⚠️ Failed to load user data.");
             return;
@@ -0,0 +1,136 @@
+//models->MultiplayerSession
+package models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records what happens during a multiplayer session as a list of events
+ * (tasks completed, XP and coins granted) instead of keeping full copies of
+ * each participant's account. When the session ends the events for a user are
+ * folded into one set of gains and applied to the persisted account in one step.
+ */
+public class MultiplayerSession {
+
+    public enum EventType {
+        TASK_COMPLETED, XP_GRANTED, COINS_GRANTED
+    }
+
+    public static class Event {
+        private final String username;
+        private final EventType type;
+        private final int amount;
+        private final Task task; // Only set for TASK_COMPLETED
+
+        private Event(String username, EventType type, int amount, Task task) {
+            this.username = username;
+            this.type = type;
+            this.amount = amount;
+            this.task = task;
+        }
+
+        public String getUsername() { return username; }
+        public EventType getType() { return type; }
+        public int getAmount() { return amount; }
+        public Task getTask() { return task; }
+    }
+
+    // Totals for one user, folded from the event list
+    public static class Gains {
+        private int xp;
+        private int coins;
+        private final List<Task> completedTasks = new ArrayList<>();
+
+        public int getXp() { return xp; }
+        public int getCoins() { return coins; }
+        public List<Task> getCompletedTasks() { return completedTasks; }
+
+        public boolean isEmpty() {
+            return xp <= 0 && coins <= 0 && completedTasks.isEmpty();
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    // A completed task grants its XP and coins, so record all three
+    public synchronized void recordTaskCompleted(User user, Task task) {
+        events.add(new Event(user.getUsername(), EventType.TASK_COMPLETED, 0, task));
+        recordXpGranted(user, task.getXpReward());
+        recordCoinsGranted(user, task.getCoinReward());
+    }
+
+    public synchronized void recordXpGranted(User user, int amount) {
+        events.add(new Event(user.getUsername(), EventType.XP_GRANTED, amount, null));
+    }
+
+    public synchronized void recordCoinsGranted(User user, int amount) {
+        events.add(new Event(user.getUsername(), EventType.COINS_GRANTED, amount, null));
+    }
+
+    public synchronized List<Event> getEvents() {
+        return Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    public synchronized Gains gainsFor(String username) {
+        Gains gains = new Gains();
+        for (Event event : events) {
+            if (!event.username.equals(username)) continue;
+            switch (event.type) {
+                case TASK_COMPLETED -> gains.completedTasks.add(event.task);
+                case XP_GRANTED -> gains.xp += event.amount;
+                case COINS_GRANTED -> gains.coins += event.amount;
+            }
+        }
+        return gains;
+    }
+
+    /**
+     * Applies this session's gains for the target's username to the target account.
+     * Everything is folded first and then written to the account in one go,
+     * so a caller only needs a single save afterwards.
+     */
+    public synchronized Gains applyTo(User target) {
+        Gains gains = gainsFor(target.getUsername());
+
+        // XP goes through addXP so level-ups and their bonus coins follow the account's own level
+        if (gains.xp > 0) {
+            target.addXP(gains.xp);
+        }
+        if (gains.coins > 0) {
+            target.addCoins(gains.coins);
+        }
+
+        target.incrementCompletedTasksCounter(gains.completedTasks.size());
+        for (Task task : gains.completedTasks) {
+            mergeCompletedTask(target, task);
+        }
+        return gains;
+    }
+
+    private void mergeCompletedTask(User target, Task task) {
+        // Prefer the same task by ID, otherwise a pending task with the same description
+        Task existing = target.findTaskById(task.getId());
+        if (existing == null) {
+            for (Task candidate : target.findTasksByDescription(task.getDescription())) {
+                if (!candidate.isCompleted()) {
+                    existing = candidate;
+                    break;
+                }
+            }
+        }
+
+        if (existing != null) {
+            // Mark as completed if not already
+            if (!existing.isCompleted()) {
+                existing.setCompleted(true);
+            }
+        } else {
+            // Add task to the account if it doesn't exist
+            Task newTask = task.copy();
+            newTask.setCompleted(true);
+            target.addTask(newTask);
+            System.out.println("Added new completed task to main account: " + task.getDescription());
+        }
+    }
+}
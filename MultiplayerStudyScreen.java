@@ -2,34 +2,36 @@
 
 package ui;
 
+import models.MultiplayerSession;
 import models.Task;
 import models.User;
+import network.SessionClient;
+import network.SessionMessage;
 import util.DataManager;
+import util.StatsPublisher;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class MultiplayerStudyScreen extends JFrame {
     private final List<User> users;
-    private final Map<String, User> originalUserData = new HashMap<>(); // Store original user data snapshots
+    private final MultiplayerSession session = new MultiplayerSession(); // Records only what changes during the session
     private final MainMenu mainMenu; // Reference to the main menu for direct updates
+    private final DefaultListModel<String> sessionFeed = new DefaultListModel<>(); // Events from remote players
+    private SessionClient sessionClient; // Set when playing over the network
 
     public MultiplayerStudyScreen(List<User> users, MainMenu mainMenu) {
         this.users = users;
         this.mainMenu = mainMenu;
 
-        // Save a snapshot of each user's initial state for comparison when closing
         for (User user : users) {
             if (DataManager.userExists(user.getUsername())) {
-                // Store the original user data from disk before any multiplayer changes
-                originalUserData.put(user.getUsername(), DataManager.loadUser(user.getUsername()));
-                System.out.println("Stored original state for " + user.getUsername());
-
                 // Clear all existing tasks for this multiplayer session
-                user.getTasks().clear();
+                // Gains are tracked by the session and merged back into the account on close
+                user.clearTasks();
                 System.out.println("Cleared existing tasks for fresh multiplayer session: " + user.getUsername());
             }
         }
@@ -44,6 +46,9 @@ public class MultiplayerStudyScreen extends JFrame {
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override
             public void windowClosing(java.awt.event.WindowEvent windowEvent) {
+                if (sessionClient != null) {
+                    sessionClient.close();
+                }
                 syncUsersWithMainAccounts();
             }
         });
@@ -127,10 +132,9 @@ public class MultiplayerStudyScreen extends JFrame {
                     int coins = Integer.parseInt(coinField.getText());
                     Task.Difficulty diff = (Task.Difficulty) difficultyBox.getSelectedItem();
                     Task task = new Task(desc, xp, coins, diff);
-                    user.getTasks().add(task);
+                    user.addTask(task);
                     model.addElement(task);
                     taskField.setText("");
-                    DataManager.saveUser(user);
                 } catch (NumberFormatException ex) {
                     JOptionPane.showMessageDialog(this, "XP and Coins must be numbers.");
                 }
@@ -144,14 +148,19 @@ public class MultiplayerStudyScreen extends JFrame {
                 user.addXP(task.getXpReward());
                 user.addCoins(task.getCoinReward());
                 user.incrementCompletedTasksCounter(); // Increment the completed tasks counter
+                session.recordTaskCompleted(user, task);
+                if (sessionClient != null && sessionClient.getUsername().equals(user.getUsername())) {
+                    // Let the other players in the networked session know
+                    sessionClient.sendTaskCompleted(task.getDescription(), task.getXpReward(), task.getCoinReward());
+                    sessionClient.sendXpChanged(user.getLevel(), user.getXp(), user.getCoins());
+                }
                 JOptionPane.showMessageDialog(this,
                         user.getUsername() + " completed a task! + " +
                                 task.getXpReward() + " XP, + " + task.getCoinReward() + " Coins!");
                 taskList.repaint();
-                DataManager.saveUser(user);
 
-                // Upload stats to Firebase leaderboard whenever a task is completed
-                util.FirebaseManager.uploadUserStats(user);
+                // Queue stats for the leaderboard whenever a task is completed
+                StatsPublisher.getInstance().publish(user);
             }
         });
 
@@ -159,15 +168,61 @@ public class MultiplayerStudyScreen extends JFrame {
         delete.addActionListener(e -> {
             Task task = taskList.getSelectedValue();
             if (task != null) {
-                user.getTasks().remove(task);
+                user.removeTask(task);
                 model.removeElement(task);
-                DataManager.saveUser(user);
             }
         });
 
         return panel;
     }
 
+    /**
+     * Joins a networked session on a relay server (see network.SessionServer) as the first user of this screen.
+     * Returns false if the server could not be reached.
+     */
+    // Connects in the background; the future completes on the EDT with whether the session is live
+    public CompletableFuture<Boolean> connectToSession(String host, int port, String sessionId) {
+        User localUser = users.get(0);
+        CompletableFuture<Boolean> connected = new CompletableFuture<>();
+        setTitle("🌐 Connecting to " + host + ":" + port + "...");
+        SessionClient.connectAsync(host, port, sessionId, localUser.getUsername(), new SessionClient.Listener() {
+            @Override
+            public void onMessage(SessionMessage message) {
+                SwingUtilities.invokeLater(() -> sessionFeed.addElement(message.toString()));
+            }
+
+            @Override
+            public void onDisconnected() {
+                SwingUtilities.invokeLater(() -> sessionFeed.addElement("⚠️ Disconnected from session server"));
+            }
+        }).whenComplete((client, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this,
+                        "Could not connect to session server at " + host + ":" + port,
+                        "Connection Failed", JOptionPane.ERROR_MESSAGE);
+                connected.complete(false);
+                return;
+            }
+            if (!isDisplayable()) {
+                // The window was closed while connecting
+                client.close();
+                connected.complete(false);
+                return;
+            }
+            sessionClient = client;
+            setTitle("🌐 Online Study Session: " + sessionId);
+            JList<String> feedList = new JList<>(sessionFeed);
+            feedList.setFont(new Font("Monospaced", Font.PLAIN, 13));
+            JScrollPane feedPane = new JScrollPane(feedList);
+            feedPane.setBorder(BorderFactory.createTitledBorder("🌐 Session Feed"));
+            feedPane.setPreferredSize(new Dimension(320, 0));
+            add(feedPane, BorderLayout.EAST);
+            revalidate();
+            connected.complete(true);
+        }));
+        return connected;
+    }
+
     private JButton createStyledButton(String text) {
         JButton button = new JButton(text);
         button.setFocusPainted(false);
@@ -179,244 +234,96 @@ public class MultiplayerStudyScreen extends JFrame {
     }
 
     private void syncUsersWithMainAccounts() {
+        List<User> mergedAccounts = new ArrayList<>();
+
         for (User user : users) {
             // Check if this is a real user (not a guest) by verifying if they exist in storage
             if (DataManager.userExists(user.getUsername())) {
-                // Skip users that don't have original data
-                if (!originalUserData.containsKey(user.getUsername())) {
-                    System.out.println("No original data for " + user.getUsername() + ", skipping sync");
-                    continue;
+                User account = mergeSessionIntoAccount(user);
+                if (account != null) {
+                    mergedAccounts.add(account);
                 }
+            } else {
+                // This is a guest user, just save their current state
+                DataManager.saveUser(user);
+            }
+        }
 
-                System.out.println("Syncing multiplayer progress for user: " + user.getUsername());
+        // Queue stats for the global leaderboard; the publisher sends them as one batch
+        StatsPublisher.getInstance().publishAll(mergedAccounts);
+    }
 
-                // Get the original user data from our stored snapshot
-                User originalUser = originalUserData.get(user.getUsername());
+    // Applies the session's gains to the user's account and saves it once.
+    // Returns the updated account, or null if there was nothing to merge.
+    private User mergeSessionIntoAccount(User user) {
+        System.out.println("Syncing multiplayer progress for user: " + user.getUsername());
+
+        // Work out what was gained during this multiplayer session from the recorded events
+        MultiplayerSession.Gains gains = session.gainsFor(user.getUsername());
+        int completedTasksInSession = gains.getCompletedTasks().size();
+        System.out.println("Tasks completed in this session: " + completedTasksInSession);
+        System.out.println("Session gains - XP: " + gains.getXp() + ", Coins: " + gains.getCoins());
+
+        // Only proceed with sync if there were actual gains or completed tasks
+        if (gains.isEmpty()) {
+            System.out.println("No gains to sync for " + user.getUsername());
+            return null;
+        }
 
-                // Calculate what was gained during this multiplayer session
-                int currentXP = user.getXp();
-                int originalXP = originalUser.getXp();
-                int xpGained = currentXP - originalXP;
+        // The user logged into the main menu is updated in place so the UI sees the change,
+        // anyone else is updated on top of what's on disk, in case another instance saved them meanwhile
+        boolean isMainMenuUser = mainMenu != null && mainMenu.getUser().getUsername().equals(user.getUsername());
+        int[] before = new int[2]; // Level and coins before the merge, for the confirmation message
+        User account;
+        if (isMainMenuUser) {
+            account = mainMenu.getUser();
+            before[0] = account.getLevel();
+            before[1] = account.getCoins();
+            session.applyTo(account);
+            DataManager.saveUser(account);
+        } else {
+            account = DataManager.updateUser(user.getUsername(), stored -> {
+                before[0] = stored.getLevel();
+                before[1] = stored.getCoins();
+                session.applyTo(stored);
+            });
+            if (account == null) {
+                return null;
+            }
+        }
+        int beforeLevel = before[0];
+        int beforeCoins = before[1];
+        System.out.println("Main account before sync - Level: " + beforeLevel + ", Coins: " + beforeCoins);
 
-                int currentCoins = user.getCoins();
-                int originalCoins = originalUser.getCoins();
-                int coinsGained = currentCoins - originalCoins;
+        System.out.println("Main account after sync - XP: " + account.getXp() + ", Coins: " + account.getCoins());
 
-                // Count how many tasks were completed in this multiplayer session
-                int completedTasksInSession = 0;
-                for (Task task : user.getTasks()) {
-                    if (task.isCompleted()) {
-                        completedTasksInSession++;
-                    }
-                }
-                System.out.println("Tasks completed in this session: " + completedTasksInSession);
+        if (isMainMenuUser) {
+            // Refresh the main menu UI to show updated stats immediately
+            mainMenu.refreshStats();
+        }
 
-                System.out.println("Original state - XP: " + originalXP + ", Coins: " + originalCoins);
-                System.out.println("Current state - XP: " + currentXP + ", Coins: " + currentCoins);
-                System.out.println("Session gains - XP: " + xpGained + ", Coins: " + coinsGained);
+        // Show message about progress saved
+        int levelsGained = account.getLevel() - beforeLevel;
+        int actualCoinsGained = account.getCoins() - beforeCoins;
 
-                // Only proceed with sync if there were actual gains or completed tasks
-                if (xpGained <= 0 && coinsGained <= 0 && completedTasksInSession == 0) {
-                    System.out.println("No gains to sync for " + user.getUsername());
-                    continue;
-                }
+        String progressMessage = "Progress for " + user.getUsername() + " has been saved to main account!";
+        if (gains.getXp() > 0) {
+            progressMessage += "\nXP gained: " + gains.getXp();
+        }
+        if (levelsGained > 0) {
+            progressMessage += "\nLevels gained: " + levelsGained;
+        }
+        if (actualCoinsGained > 0) {
+            progressMessage += "\nCoins gained: " + actualCoinsGained;
+        }
+        if (completedTasksInSession > 0) {
+            progressMessage += "\nTasks completed: " + completedTasksInSession;
+        }
 
-                // Check if this user is the currently logged-in user from the main menu
-                boolean isMainMenuUser = false;
-                if (mainMenu != null && mainMenu.getUser().getUsername().equals(user.getUsername())) {
-                    isMainMenuUser = true;
-                    System.out.println("This is the main menu user - will update UI directly");
-
-                    // Update the main menu user directly (this will update the UI immediately)
-                    // Note: We don't need to add XP and coins again because they were already added
-                    // when the user completed the tasks during the multiplayer session
-                    // The multiplayer user object already has the updated values
-                    // mainMenu.updateUserFromMultiplayer(xpGained, coinsGained);
-
-                    // Instead, we'll directly set the values from the multiplayer session
-                    User mainUser = mainMenu.getUser();
-                    mainUser.setXp(user.getXp());
-                    mainUser.setLevel(user.getLevel());
-                    mainUser.setCoins(user.getCoins());
-
-                    // Refresh the main menu UI to show updated stats immediately
-                    mainMenu.refreshStats();
-
-                    // Update the total completed tasks counter for each completed task in this session
-                    // We need to do this because we previously cleared the tasks when starting the session
-                    for (int i = 0; i < completedTasksInSession; i++) {
-                        mainUser.incrementCompletedTasksCounter();
-                    }
-
-                    // Transfer newly completed tasks from multiplayer session to main account
-                    for (Task task : user.getTasks()) {
-                        if (task.isCompleted()) {
-                            // Skip tasks that were already completed in the original state
-                            boolean wasCompletedBefore = false;
-                            for (Task originalTask : originalUser.getTasks()) {
-                                if (originalTask.getDescription().equals(task.getDescription()) &&
-                                    originalTask.isCompleted()) {
-                                    wasCompletedBefore = true;
-                                    break;
-                                }
-                            }
-
-                            if (wasCompletedBefore) {
-                                continue;
-                            }
-
-                            // Add completed task to main user if it doesn't exist
-                            boolean taskExistsInMain = false;
-                            for (Task mainTask : mainUser.getTasks()) {
-                                if (mainTask.getDescription().equals(task.getDescription())) {
-                                    taskExistsInMain = true;
-                                    // Mark as completed if not already
-                                    if (!mainTask.isCompleted()) {
-                                        mainTask.setCompleted(true);
-                                    }
-                                    break;
-                                }
-                            }
-
-                            if (!taskExistsInMain) {
-                                Task newTask = new Task(
-                                    task.getDescription(),
-                                    task.getXpReward(),
-                                    task.getCoinReward(),
-                                    task.getDifficulty()
-                                );
-                                newTask.setCompleted(true);
-                                mainUser.getTasks().add(newTask);
-                            }
-                        }
-                    }
-
-                    // Upload stats to Firebase to update the global leaderboard
-                    util.FirebaseManager.uploadUserStats(mainUser);
-
-                    // Show message about progress saved
-                    String progressMessage = "Progress for " + user.getUsername() + " has been saved to main account!";
-                    if (xpGained > 0) {
-                        progressMessage += "\nXP gained: " + xpGained;
-                    }
-                    if (coinsGained > 0) {
-                        progressMessage += "\nCoins gained: " + coinsGained;
-                    }
-
-                    JOptionPane.showMessageDialog(this,
-                            progressMessage,
-                            "Progress Saved", JOptionPane.INFORMATION_MESSAGE);
-
-                    continue; // Skip the standard sync process for this user
-                }
+        JOptionPane.showMessageDialog(this,
+                progressMessage,
+                "Progress Saved", JOptionPane.INFORMATION_MESSAGE);
 
-                // Standard sync process for non-main menu users
-                User mainUser = DataManager.loadUser(user.getUsername());
-                if (mainUser != null) {
-                    // Store state before applying changes for confirmation message
-                    int beforeXP = mainUser.getXp();
-                    int beforeLevel = mainUser.getLevel();
-                    int beforeCoins = mainUser.getCoins();
-
-                    System.out.println("Main account before sync - XP: " + beforeXP + ", Coins: " + beforeCoins);
-
-                    // Apply the gains directly to the main account
-                    if (xpGained > 0) {
-                        mainUser.addXP(xpGained);
-                    }
-
-                    if (coinsGained > 0) {
-                        mainUser.addCoins(coinsGained);
-                    }
-
-                    System.out.println("Main account after sync - XP: " + mainUser.getXp() + ", Coins: " + mainUser.getCoins());
-
-                    // Update the total completed tasks counter for each completed task in this session
-                    // We need to do this because we previously cleared the tasks when starting the session
-                    for (int i = 0; i < completedTasksInSession; i++) {
-                        mainUser.incrementCompletedTasksCounter();
-                    }
-
-                    // Transfer newly completed tasks from multiplayer session to main account
-                    for (Task task : user.getTasks()) {
-                        if (task.isCompleted()) {
-                            // Skip tasks that were already completed in the original state
-                            boolean wasCompletedBefore = false;
-                            for (Task originalTask : originalUser.getTasks()) {
-                                if (originalTask.getDescription().equals(task.getDescription()) &&
-                                    originalTask.isCompleted()) {
-                                    wasCompletedBefore = true;
-                                    break;
-                                }
-                            }
-
-                            if (wasCompletedBefore) {
-                                System.out.println("Task was already completed before: " + task.getDescription());
-                                continue;
-                            }
-
-                            // Now check if task exists in main account and update it
-                            boolean taskExistsInMain = false;
-                            for (Task mainTask : mainUser.getTasks()) {
-                                if (mainTask.getDescription().equals(task.getDescription())) {
-                                    taskExistsInMain = true;
-                                    // Mark as completed if not already
-                                    if (!mainTask.isCompleted()) {
-                                        mainTask.setCompleted(true);
-                                    }
-                                    break;
-                                }
-                            }
-
-                            // Add task to main account if it doesn't exist
-                            if (!taskExistsInMain) {
-                                Task newTask = new Task(
-                                    task.getDescription(),
-                                    task.getXpReward(),
-                                    task.getCoinReward(),
-                                    task.getDifficulty()
-                                );
-                                newTask.setCompleted(true);
-                                mainUser.getTasks().add(newTask);
-                                System.out.println("Added new completed task to main account: " + task.getDescription());
-                            }
-                        }
-                    }
-
-                    // Save the updated main user data
-                    DataManager.saveUser(mainUser);
-
-                    // Upload stats to Firebase to update the global leaderboard
-                    util.FirebaseManager.uploadUserStats(mainUser);
-
-                    // Calculate actual gains for display
-                    int actualXPGained = mainUser.getXp() - beforeXP;
-                    int levelsGained = mainUser.getLevel() - beforeLevel;
-                    int actualCoinsGained = mainUser.getCoins() - beforeCoins;
-
-                    // Show message about progress saved
-                    String progressMessage = "Progress for " + user.getUsername() + " has been saved to main account!";
-                    if (actualXPGained > 0) {
-                        progressMessage += "\nXP gained: " + actualXPGained;
-                    }
-                    if (levelsGained > 0) {
-                        progressMessage += "\nLevels gained: " + levelsGained;
-                    }
-                    if (actualCoinsGained > 0) {
-                        progressMessage += "\nCoins gained: " + actualCoinsGained;
-                    }
-                    if (completedTasksInSession > 0) {
-                        progressMessage += "\nTasks completed: " + completedTasksInSession;
-                    }
-
-                    JOptionPane.showMessageDialog(this,
-                            progressMessage,
-                            "Progress Saved", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } else {
-                // This is a guest user, just save their current state
-                DataManager.saveUser(user);
-            }
-        }
+        return account;
     }
-}
\ No newline at end of file
+}
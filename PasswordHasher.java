@@ -0,0 +1,151 @@
+//util->PasswordHasher
+package util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Salted PBKDF2 (HMAC-SHA256) password hashes, stored as
+ * "pbkdf2$<iterations>$<salt>$<hash>" with Base64 salt and hash.
+ * The work factor is set with -Dpassword.iterations=N; run this class's main
+ * to find the largest value that stays within a login latency budget.
+ * Hashes made with fewer iterations still verify and report needsRehash,
+ * so raising the work factor upgrades accounts as they sign in.
+ *
+ * After one successful slow check, a cheap salted digest of the password is
+ * kept in memory, so signing the same account in again during this run (common
+ * in multiplayer) doesn't pay the full cost twice.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final Map<String, byte[]> verifiedDigests = new ConcurrentHashMap<>(); // stored hash -> fast digest
+
+    public static int getIterations() {
+        return Integer.getInteger("password.iterations", DEFAULT_ITERATIONS);
+    }
+
+    public static String hash(String password) {
+        return hash(password, getIterations());
+    }
+
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    // Anything not in our format is a plaintext password from before hashing was added
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) return true;
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < getIterations();
+    }
+
+    public static boolean verify(String password, String stored) {
+        if (stored == null) return false;
+        if (!isHashed(stored)) {
+            // Legacy plaintext entry; DataManager hashes these at startup and on sign-in
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+
+        byte[] cached = verifiedDigests.get(stored);
+        if (cached != null) {
+            return MessageDigest.isEqual(cached, fastDigest(password, salt));
+        }
+
+        int iterations = Integer.parseInt(parts[1]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        boolean matches = MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        if (matches) {
+            verifiedDigests.put(stored, fastDigest(password, salt));
+        }
+        return matches;
+    }
+
+    // Loads the crypto provider and gets the hash loop compiled before the first sign-in
+    public static void warmUp() {
+        pbkdf2("warm-up", new byte[SALT_BYTES], 20_000);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] fastDigest(String password, byte[] salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Picks a work factor for this machine.
+     * Usage: java util.PasswordHasher [budgetMillis] [players]
+     * Prints the largest iteration count (in steps of 10,000) whose hash stays within
+     * the budget, and how long that many players signing in one after another would wait.
+     */
+    public static void main(String[] args) {
+        long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        // Cost grows linearly with iterations, so measure a sample and scale.
+        // The first rounds run before the JIT has compiled the hot loop, so they are discarded
+        int sample = 50_000;
+        warmUp();
+        median(sample);
+        double perIteration = median(sample) / sample;
+        int iterations = Math.max(10_000, (int) (budgetMillis / perIteration) / 10_000 * 10_000);
+        double millis = median(iterations);
+
+        System.out.printf("One hash with %d iterations: %.1f ms (budget %d ms)%n", iterations, millis, budgetMillis);
+        System.out.printf("%d players signing in one after another: %.0f ms of hashing in total%n",
+                players, millis * players);
+        System.out.println("Use: -Dpassword.iterations=" + iterations
+                + (iterations < DEFAULT_ITERATIONS ? "  (below the default of " + DEFAULT_ITERATIONS + ")" : ""));
+    }
+
+    private static double median(int iterations) {
+        double[] runs = new double[5];
+        for (int i = 0; i < runs.length; i++) {
+            long start = System.nanoTime();
+            hash("benchmark", iterations);
+            runs[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(runs);
+        return runs[runs.length / 2];
+    }
+}
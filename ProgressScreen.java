@@ -2,10 +2,16 @@ package ui;
 
 import models.Task;
 import models.User;
+import util.TaskFacets;
+import util.XpCurve;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -85,7 +91,7 @@ public class ProgressScreen extends JFrame {
 
         // Calculate key metrics
         int totalTasks = user.getTasks().size();
-        long completedTasks = user.getTasks().stream().filter(Task::isCompleted).count();
+        long completedTasks = user.getTaskFacets().count(null, null, true);
         int completionRate = totalTasks > 0 ? (int)((completedTasks * 100) / totalTasks) : 0;
         int totalXP = user.getXp();
         int totalCoins = user.getCoins();
@@ -143,10 +149,9 @@ public class ProgressScreen extends JFrame {
         // Calculate XP needed for next level
         int currentLevel = user.getLevel();
         int currentXP = user.getXp();
-        int xpForCurrentLevel = calculateXPForLevel(currentLevel);
-        int xpForNextLevel = calculateXPForLevel(currentLevel + 1);
-        int xpNeeded = xpForNextLevel - xpForCurrentLevel;
-        int xpProgress = currentXP - xpForCurrentLevel;
+        // User XP is the progress within the current level, so the curve gives the bar's maximum directly
+        long xpNeeded = XpCurve.xpNeeded(currentLevel);
+        int xpProgress = currentXP;
         int progressPercent = (int)(((double)xpProgress / xpNeeded) * 100);
         if (progressPercent < 0) progressPercent = 0;
         if (progressPercent > 100) progressPercent = 100;
@@ -165,7 +170,7 @@ public class ProgressScreen extends JFrame {
 
         // Task completion progress
         int totalTasks = user.getTasks().size();
-        long completedTasks = user.getTasks().stream().filter(Task::isCompleted).count();
+        long completedTasks = user.getTaskFacets().count(null, null, true);
         int taskProgressPercent = totalTasks > 0 ? (int)((completedTasks * 100) / totalTasks) : 0;
 
         JLabel taskLabel = new JLabel("Task Completion");
@@ -247,13 +252,14 @@ public class ProgressScreen extends JFrame {
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         // Create column names and table model for tasks
-        String[] columnNames = {"Description", "Difficulty", "XP", "Coins", "Status", "Completion Date"};
-        Object[][] data = new Object[user.getTasks().size()][6];
+        String[] columnNames = {"Description", "Difficulty", "XP", "Coins", "Status", "Completion Date", "Subjects"};
+        List<Task> rows = new ArrayList<>(user.getTasks());
+        Object[][] data = new Object[rows.size()][7];
 
         // Fill data
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM d, yyyy");
         int i = 0;
-        for (Task task : user.getTasks()) {
+        for (Task task : rows) {
             data[i][0] = task.getDescription();
             data[i][1] = task.getDifficulty();
             data[i][2] = task.getXpReward();
@@ -261,6 +267,7 @@ public class ProgressScreen extends JFrame {
             data[i][4] = task.isCompleted() ? "Completed" : "Pending";
             data[i][5] = task.getCompletionDate() != null ?
                     task.getCompletionDate().format(formatter) : "-";
+            data[i][6] = String.join(", ", task.getTags());
             i++;
         }
 
@@ -268,7 +275,41 @@ public class ProgressScreen extends JFrame {
         taskTable.setFont(new Font("Monospaced", Font.PLAIN, 14));
         taskTable.getTableHeader().setFont(labelFont);
         taskTable.setRowHeight(25);
-        taskTable.setAutoCreateRowSorter(true);
+        TableRowSorter<TableModel> sorter = new TableRowSorter<>(taskTable.getModel());
+        taskTable.setRowSorter(sorter);
+
+        // Search box: the index finds the matching tasks, the row filter just checks membership
+        JTextField searchField = new JTextField(20);
+        Runnable filter = () -> {
+            String query = searchField.getText();
+            if (query.isBlank()) {
+                sorter.setRowFilter(null);
+                return;
+            }
+            Set<Task> matches = new HashSet<>(user.searchTasks(query));
+            sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                    return matches.contains(rows.get(entry.getIdentifier()));
+                }
+            });
+        };
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filter.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filter.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filter.run();
+            }
+        });
 
         JScrollPane scrollPane = new JScrollPane(taskTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(accentColor, 2));
@@ -278,7 +319,19 @@ public class ProgressScreen extends JFrame {
         titleLabel.setFont(headerFont);
         titleLabel.setForeground(accentColor);
 
-        panel.add(titleLabel, BorderLayout.NORTH);
+        JLabel searchLabel = new JLabel("🔍 Search:");
+        searchLabel.setFont(labelFont);
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        searchPanel.setBackground(backgroundColor);
+        searchPanel.add(searchLabel);
+        searchPanel.add(searchField);
+
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(backgroundColor);
+        headerPanel.add(titleLabel, BorderLayout.WEST);
+        headerPanel.add(searchPanel, BorderLayout.EAST);
+
+        panel.add(headerPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
         return panel;
@@ -320,7 +373,7 @@ public class ProgressScreen extends JFrame {
         ));
 
         // Get the count of completed tasks
-        long completedTasks = user.getTasks().stream().filter(Task::isCompleted).count();
+        long completedTasks = user.getTaskFacets().count(null, null, true);
 
         // Define achievement milestones
         String[][] achievements = {
@@ -414,6 +467,9 @@ public class ProgressScreen extends JFrame {
         // XP and Coins earned over time
         JPanel earningsPanel = createEarningsPanel();
 
+        // Tasks per subject tag
+        JPanel subjectsPanel = createSubjectsPanel();
+
         // Study consistency panel
         JPanel consistencyPanel = createConsistencyPanel();
 
@@ -422,6 +478,8 @@ public class ProgressScreen extends JFrame {
         panel.add(Box.createRigidArea(new Dimension(0, 20)));
         panel.add(earningsPanel);
         panel.add(Box.createRigidArea(new Dimension(0, 20)));
+        panel.add(subjectsPanel);
+        panel.add(Box.createRigidArea(new Dimension(0, 20)));
         panel.add(consistencyPanel);
 
         return panel;
@@ -437,17 +495,11 @@ public class ProgressScreen extends JFrame {
             BorderFactory.createEmptyBorder(10, 10, 10, 10)
         ));
 
-        // Count tasks by difficulty
+        // Count completed tasks by difficulty
+        TaskFacets facets = user.getTaskFacets();
         Map<Task.Difficulty, Integer> difficultyCount = new HashMap<>();
         for (Task.Difficulty diff : Task.Difficulty.values()) {
-            difficultyCount.put(diff, 0);
-        }
-
-        for (Task task : user.getTasks()) {
-            if (task.isCompleted()) {
-                Task.Difficulty diff = task.getDifficulty();
-                difficultyCount.put(diff, difficultyCount.get(diff) + 1);
-            }
+            difficultyCount.put(diff, facets.count(null, diff, true));
         }
 
         // Create labels for each difficulty
@@ -510,17 +562,17 @@ public class ProgressScreen extends JFrame {
         Map<Task.Difficulty, Integer> xpByDifficulty = new HashMap<>();
         Map<Task.Difficulty, Integer> coinsByDifficulty = new HashMap<>();
 
+        // Only the completed tasks of each difficulty are visited
+        TaskFacets facets = user.getTaskFacets();
         for (Task.Difficulty diff : Task.Difficulty.values()) {
-            xpByDifficulty.put(diff, 0);
-            coinsByDifficulty.put(diff, 0);
-        }
-
-        for (Task task : user.getTasks()) {
-            if (task.isCompleted()) {
-                Task.Difficulty diff = task.getDifficulty();
-                xpByDifficulty.put(diff, xpByDifficulty.get(diff) + task.getXpReward());
-                coinsByDifficulty.put(diff, coinsByDifficulty.get(diff) + task.getCoinReward());
+            int xp = 0;
+            int coins = 0;
+            for (Task task : facets.find(null, diff, true)) {
+                xp += task.getXpReward();
+                coins += task.getCoinReward();
             }
+            xpByDifficulty.put(diff, xp);
+            coinsByDifficulty.put(diff, coins);
         }
 
         // Create data for the table
@@ -578,6 +630,65 @@ public class ProgressScreen extends JFrame {
         return panel;
     }
 
+    private JPanel createSubjectsPanel() {
+        JPanel panel = new JPanel();
+        panel.setLayout(new BorderLayout());
+        panel.setBackground(backgroundColor);
+        panel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createTitledBorder(BorderFactory.createLineBorder(accentColor),
+                "Subjects", TitledBorder.LEFT, TitledBorder.TOP, labelFont, accentColor),
+            BorderFactory.createEmptyBorder(10, 10, 10, 10)
+        ));
+
+        TaskFacets facets = user.getTaskFacets();
+        if (facets.getTags().isEmpty()) {
+            JLabel emptyLabel = new JLabel("Add subjects to your tasks (e.g. \"math, exam\") to see them broken down here.");
+            emptyLabel.setFont(new Font("Monospaced", Font.PLAIN, 14));
+            emptyLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            panel.add(emptyLabel, BorderLayout.CENTER);
+            return panel;
+        }
+
+        // Every cell is a facet count: tag x difficulty x completion
+        Task.Difficulty[] difficulties = Task.Difficulty.values();
+        String[] columnNames = new String[3 + difficulties.length];
+        columnNames[0] = "Subject";
+        columnNames[1] = "Tasks";
+        columnNames[2] = "Completed";
+        for (int d = 0; d < difficulties.length; d++) {
+            columnNames[3 + d] = difficulties[d] + " done";
+        }
+
+        Map<String, Integer> totals = facets.countByTag(null, null);
+        Map<String, Integer> completed = facets.countByTag(null, true);
+        List<Map<String, Integer>> completedByDifficulty = new ArrayList<>();
+        for (Task.Difficulty diff : difficulties) {
+            completedByDifficulty.add(facets.countByTag(diff, true));
+        }
+
+        Object[][] data = new Object[totals.size()][columnNames.length];
+        int i = 0;
+        for (String tag : totals.keySet()) {
+            data[i][0] = "#" + tag;
+            data[i][1] = totals.get(tag);
+            data[i][2] = completed.get(tag);
+            for (int d = 0; d < difficulties.length; d++) {
+                data[i][3 + d] = completedByDifficulty.get(d).get(tag);
+            }
+            i++;
+        }
+
+        JTable subjectsTable = new JTable(data, columnNames);
+        subjectsTable.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        subjectsTable.getTableHeader().setFont(labelFont);
+        subjectsTable.setRowHeight(25);
+        subjectsTable.setEnabled(false); // Make it non-editable
+
+        panel.add(new JScrollPane(subjectsTable), BorderLayout.CENTER);
+
+        return panel;
+    }
+
     private JPanel createConsistencyPanel() {
         JPanel panel = new JPanel();
         panel.setLayout(new BorderLayout());
@@ -607,9 +718,4 @@ public class ProgressScreen extends JFrame {
 
         return panel;
     }
-
-    // Helper method to calculate XP needed for a given level
-    private int calculateXPForLevel(int level) {
-        return (level * level * 100);
-    }
 }
@@ -0,0 +1,244 @@
+//util->RankedIndex
+package util;
+
+import models.LeaderboardEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Leaderboard entries kept in rank order with O(log n) rank queries.
+ * A treap (randomized balanced tree) where every node also stores the size of
+ * its subtree, so "what rank is this user", "who is k-th" and "who is around
+ * this user" are answered by walking one path instead of sorting everything.
+ * Ranks are 1-based; rank 1 is the best entry.
+ */
+public class RankedIndex {
+
+    private static class Node {
+        private final LeaderboardEntry entry;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(LeaderboardEntry entry, int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<LeaderboardEntry> order;
+    private final Map<String, LeaderboardEntry> byUsername = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    public RankedIndex() {
+        this(LeaderboardEntry.RANKING);
+    }
+
+    // The comparator must break ties by username so that no two users compare equal
+    public RankedIndex(Comparator<LeaderboardEntry> order) {
+        this.order = order;
+    }
+
+    public synchronized int size() {
+        return byUsername.size();
+    }
+
+    public synchronized LeaderboardEntry get(String username) {
+        return byUsername.get(username);
+    }
+
+    // Insert or replace the user's entry, returns the previous one
+    public synchronized LeaderboardEntry put(LeaderboardEntry entry) {
+        LeaderboardEntry previous = byUsername.put(entry.getUsername(), entry);
+        if (previous != null) {
+            root = delete(root, previous);
+        }
+        root = insert(root, new Node(entry, random.nextInt()));
+        return previous;
+    }
+
+    // Like put, but ignores the entry if the stored one has a newer timestamp
+    public synchronized boolean putIfNotOlder(LeaderboardEntry entry) {
+        LeaderboardEntry current = byUsername.get(entry.getUsername());
+        if (current != null && current.getUpdatedAt() > entry.getUpdatedAt()) {
+            return false;
+        }
+        put(entry);
+        return true;
+    }
+
+    public synchronized LeaderboardEntry remove(String username) {
+        LeaderboardEntry previous = byUsername.remove(username);
+        if (previous != null) {
+            root = delete(root, previous);
+        }
+        return previous;
+    }
+
+    public synchronized void clear() {
+        byUsername.clear();
+        root = null;
+    }
+
+    // Rank of a stored user, or -1 if the user is not in the index
+    public synchronized int rankOf(String username) {
+        LeaderboardEntry entry = byUsername.get(username);
+        return entry == null ? -1 : countBefore(entry) + 1;
+    }
+
+    // Rank the given stats would have, ignoring whatever is stored for the same user
+    public synchronized int rankFor(LeaderboardEntry entry) {
+        int before = countBefore(entry);
+        LeaderboardEntry stored = byUsername.get(entry.getUsername());
+        if (stored != null && order.compare(stored, entry) < 0) {
+            before--;
+        }
+        return before + 1;
+    }
+
+    // Entry at the given rank, or null if out of range
+    public synchronized LeaderboardEntry kth(int rank) {
+        if (rank < 1 || rank > size(root)) return null;
+        Node node = root;
+        int k = rank;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (k <= leftSize) {
+                node = node.left;
+            } else if (k == leftSize + 1) {
+                return node.entry;
+            } else {
+                k -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    // Up to count entries starting at fromRank, in rank order
+    public synchronized List<LeaderboardEntry> range(int fromRank, int count) {
+        List<LeaderboardEntry> result = new ArrayList<>(Math.max(0, Math.min(count, size(root))));
+        collectRange(root, Math.max(1, fromRank), Math.max(1, fromRank) + count - 1, 0, result);
+        return result;
+    }
+
+    // The user's entry with up to radius entries above and below it
+    public synchronized List<LeaderboardEntry> neighbors(String username, int radius) {
+        int rank = rankOf(username);
+        if (rank < 0) return new ArrayList<>();
+        int from = Math.max(1, rank - radius);
+        return range(from, rank + radius - from + 1);
+    }
+
+    public synchronized List<LeaderboardEntry> top(int count) {
+        return range(1, count);
+    }
+
+    // Every entry in rank order
+    public synchronized List<LeaderboardEntry> toList() {
+        List<LeaderboardEntry> result = new ArrayList<>(size(root));
+        collectRange(root, 1, Integer.MAX_VALUE, 0, result);
+        return result;
+    }
+
+    private int countBefore(LeaderboardEntry entry) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (order.compare(node.entry, entry) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    // In-order walk that only visits subtrees overlapping [from, to]; offset is the rank before this subtree
+    private void collectRange(Node node, int from, int to, int offset, List<LeaderboardEntry> out) {
+        if (node == null || offset + 1 > to || offset + node.size < from) return;
+        int nodeRank = offset + size(node.left) + 1;
+        collectRange(node.left, from, to, offset, out);
+        if (nodeRank >= from && nodeRank <= to) {
+            out.add(node.entry);
+        }
+        collectRange(node.right, from, to, nodeRank, out);
+    }
+
+    private Node insert(Node node, Node fresh) {
+        if (node == null) return fresh;
+        if (fresh.priority > node.priority) {
+            Node[] parts = split(node, fresh.entry);
+            fresh.left = parts[0];
+            fresh.right = parts[1];
+            update(fresh);
+            return fresh;
+        }
+        if (order.compare(fresh.entry, node.entry) < 0) {
+            node.left = insert(node.left, fresh);
+        } else {
+            node.right = insert(node.right, fresh);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node delete(Node node, LeaderboardEntry entry) {
+        if (node == null) return null;
+        int cmp = order.compare(entry, node.entry);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = delete(node.left, entry);
+        } else {
+            node.right = delete(node.right, entry);
+        }
+        update(node);
+        return node;
+    }
+
+    // Splits into entries ranked before the key and the rest
+    private Node[] split(Node node, LeaderboardEntry key) {
+        if (node == null) return new Node[]{null, null};
+        if (order.compare(node.entry, key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+}
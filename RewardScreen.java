@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Arrays;
 import models.User;
 import models.Reward;
+import util.DataManager;
 
 public class RewardScreen extends JFrame {
     private User user;
@@ -65,6 +66,7 @@ public class RewardScreen extends JFrame {
         JButton buyButton = new JButton("Buy");
         buyButton.addActionListener(e -> {
             if (user.spendCoins(reward.getCost())) {
+                DataManager.saveUser(user); // Only the coin balance is written
                 JOptionPane.showMessageDialog(null, "You redeemed: " + reward.getName());
                 coinsLabel.setText("Coins: " + user.getCoins());
                 mainMenu.refreshStats();  // Updates MainMenu
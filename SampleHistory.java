@@ -0,0 +1,62 @@
+//util->SampleHistory
+package util;
+
+import models.Task;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generated study tasks for the benchmark mains (TaskFootprint, TaskSearchIndex,
+ * TaskFacets, DocumentCodecs), so they all measure the same kind of history.
+ * Descriptions look like "Review notes for Biology 7": a few hundred distinct
+ * ones, repeated many times, as in a real account. Seeded, so every run sees
+ * the same data.
+ */
+public class SampleHistory {
+    private static final String[] SUBJECTS = {"Math", "Physics", "Chemistry", "Biology", "History", "English", "Spanish", "Programming"};
+    private static final String[] CHORES = {"Read chapter", "Finish worksheet", "Review notes for", "Practice problems in", "Flashcards for"};
+
+    private final Random random = new Random(42);
+
+    // The subjects as the lower-case tags a user would give them
+    public static String[] tags() {
+        String[] tags = new String[SUBJECTS.length];
+        for (int i = 0; i < SUBJECTS.length; i++) {
+            tags[i] = SUBJECTS[i].toLowerCase(Locale.ROOT);
+        }
+        return tags;
+    }
+
+    // For benchmarks that draw more of their own data from the same seeded sequence
+    public Random random() {
+        return random;
+    }
+
+    public String description() {
+        return CHORES[random.nextInt(CHORES.length)] + " " + SUBJECTS[random.nextInt(SUBJECTS.length)]
+                + " " + (1 + random.nextInt(12));
+    }
+
+    public String tag() {
+        return SUBJECTS[random.nextInt(SUBJECTS.length)].toLowerCase(Locale.ROOT);
+    }
+
+    // A long history: rewards by difficulty, most tasks completed on some day in the last four years
+    public List<Task> tasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Task.Difficulty difficulty = Task.Difficulty.values()[random.nextInt(3)];
+            Task task = new Task(description(), 10 * (difficulty.ordinal() + 1), 5 * (difficulty.ordinal() + 1), difficulty);
+            if (random.nextInt(10) < 8) {
+                task.setCompleted(true);
+                task.setCompletionDate(LocalDate.now().minusDays(random.nextInt(1500)));
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,194 @@
+//network->SessionClient
+package network;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Client side of a networked multiplayer session.
+ * Outgoing messages are queued and a sender thread writes whatever has piled up
+ * as one batch; a reader thread hands incoming messages to the listener.
+ * Connecting blocks for up to CONNECT_TIMEOUT_MS, so UI code uses connectAsync.
+ */
+public class SessionClient implements Closeable {
+
+    public interface Listener {
+        void onMessage(SessionMessage message);
+
+        void onDisconnected();
+    }
+
+    public static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int MAX_BATCH = 256;
+
+    private final SocketChannel channel;
+    private final String username;
+    private final Listener listener;
+    private final BlockingQueue<SessionMessage> outgoing = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    private final Thread sender;
+    private volatile boolean closed;        // close() was called
+    private volatile boolean disconnected;  // The connection dropped on its own
+
+    public SessionClient(String host, int port, String sessionId, String username, Listener listener) throws IOException {
+        this.username = username;
+        this.listener = listener;
+        channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        outgoing.add(SessionMessage.join(sessionId, username));
+
+        reader = new Thread(this::readLoop, "session-client-reader");
+        reader.setDaemon(true);
+        sender = new Thread(this::sendLoop, "session-client-sender");
+        sender.setDaemon(true);
+        reader.start();
+        sender.start();
+    }
+
+    // Resolves and connects on a background thread; fails with the IOException if the server can't be reached
+    public static CompletableFuture<SessionClient> connectAsync(String host, int port, String sessionId, String username,
+                                                              Listener listener) {
+        CompletableFuture<SessionClient> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(new SessionClient(host, port, sessionId, username, listener));
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+            }
+        }, "session-client-connect");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    // False if the message was not queued: the client is closed or the message can never fit in a frame
+    public boolean send(SessionMessage message) {
+        if (closed || disconnected) return false;
+        if (!message.isSendable()) {
+            System.out.println("⚠️ Not sending a session message too large for the relay (" + message.getEncodedSize() + " bytes)");
+            return false;
+        }
+        outgoing.add(message);
+        return true;
+    }
+
+    public boolean sendTaskCompleted(String description, int xp, int coins) {
+        return send(SessionMessage.taskCompleted(username, description, xp, coins));
+    }
+
+    public boolean sendXpChanged(int level, int xp, int coins) {
+        return send(SessionMessage.xpChanged(username, level, xp, coins));
+    }
+
+    private void sendLoop() {
+        List<SessionMessage> batch = new ArrayList<>();
+        try {
+            while (!closed || !outgoing.isEmpty()) {
+                SessionMessage first = outgoing.take();
+                batch.add(first);
+                // Whatever else is already queued goes out in the same frame
+                outgoing.drainTo(batch, MAX_BATCH - 1);
+
+                try {
+                    for (ByteBuffer frame : SessionMessage.encodeBatches(batch)) {
+                        while (frame.hasRemaining()) {
+                            channel.write(frame);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Only this batch is lost; the sender keeps running
+                    e.printStackTrace();
+                }
+                boolean left = batch.get(batch.size() - 1).getType() == SessionMessage.Type.LEAVE;
+                batch.clear();
+                if (left) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed && !disconnected) e.printStackTrace();
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (!closed) {
+                header.clear();
+                readFully(header);
+                int length = header.getInt(0);
+                if (length < 2 || length > SessionMessage.MAX_FRAME_SIZE - 4) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(body);
+                body.flip();
+                for (SessionMessage message : SessionMessage.decodeBatch(body)) {
+                    listener.onMessage(message);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Disconnected from session server: " + e.getMessage());
+            }
+        } finally {
+            // After close() the channel is already taken care of; otherwise release it here
+            if (!closed) {
+                disconnected = true;
+                sender.interrupt();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                listener.onDisconnected();
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Server closed the connection");
+        }
+    }
+
+    // Sends LEAVE, waits briefly for it to go out, then closes the socket
+    @Override
+    public void close() {
+        if (closed) return;
+        boolean connected = !disconnected;
+        if (connected) outgoing.add(SessionMessage.leave(username)); // Before closed is set, so the sender still sees it
+        closed = true;
+        if (connected) {
+            try {
+                sender.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,170 @@
+//network->SessionLoopbackTest
+package network;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end check of the session relay over loopback: a SessionServer on a free
+ * port and two SessionClients in one session. Covers joining, relaying in order,
+ * batches too large for one frame, messages too large for any frame, dropping a
+ * client that stops reading, leaving, and the server going away.
+ * Exits with an error on the first failed check.
+ * Usage: java network.SessionLoopbackTest
+ */
+public class SessionLoopbackTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    // Collects what one client receives, for the main thread to check
+    private static class Inbox implements SessionClient.Listener {
+        private final BlockingQueue<SessionMessage> messages = new LinkedBlockingQueue<>();
+        private volatile boolean disconnected;
+
+        @Override
+        public void onMessage(SessionMessage message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnected = true;
+        }
+
+        SessionMessage next() throws InterruptedException {
+            SessionMessage message = messages.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            check(message != null, "timed out waiting for a message");
+            return message;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SessionServer server = new SessionServer(0);
+        server.start();
+        Inbox aliceInbox = new Inbox();
+        Inbox bobInbox = new Inbox();
+        try (SessionClient alice = new SessionClient("localhost", server.getPort(), "room", "alice", aliceInbox)) {
+            awaitSessions(server, 1);
+            SessionClient bob = new SessionClient("localhost", server.getPort(), "room", "bob", bobInbox);
+
+            // Each side hears about the other
+            expect(bobInbox.next(), SessionMessage.Type.JOIN, "alice");
+            expect(aliceInbox.next(), SessionMessage.Type.JOIN, "bob");
+            System.out.println("✅ join");
+
+            check(alice.sendTaskCompleted("Read chapter 3", 30, 10), "task message not queued");
+            check(alice.sendXpChanged(2, 45, 60), "xp message not queued");
+            SessionMessage task = expect(bobInbox.next(), SessionMessage.Type.TASK_COMPLETED, "alice");
+            check(task.getDescription().equals("Read chapter 3") && task.getXpReward() == 30 && task.getCoinReward() == 10,
+                    "task fields changed in transit: " + task);
+            SessionMessage xp = expect(bobInbox.next(), SessionMessage.Type.XP_CHANGED, "alice");
+            check(xp.getLevel() == 2 && xp.getXp() == 45 && xp.getCoins() == 60, "xp fields changed in transit: " + xp);
+            System.out.println("✅ relay in order");
+
+            // 40 messages of 4 KB queued at once: about 160 KB, so the client and the
+            // server both have to split them over several frames
+            String longDescription = "x".repeat(4000);
+            int count = 40;
+            List<SessionMessage> batch = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                batch.add(SessionMessage.taskCompleted("alice", i + longDescription, i, i));
+            }
+            List<ByteBuffer> frames = SessionMessage.encodeBatches(batch);
+            check(frames.size() > 1, "a batch larger than a frame was not split");
+            int decoded = 0;
+            for (ByteBuffer frame : frames) {
+                check(frame.remaining() <= SessionMessage.MAX_FRAME_SIZE, "frame over " + SessionMessage.MAX_FRAME_SIZE + " bytes");
+                for (SessionMessage message : SessionMessage.decodeBatch(frame.position(4))) {
+                    check(message.getXpReward() == decoded++, "split batch decoded out of order");
+                }
+            }
+            check(decoded == count, "split batch lost messages");
+            for (int i = 0; i < count; i++) {
+                check(alice.sendTaskCompleted(i + longDescription, i, i), "large message not queued");
+            }
+            for (int i = 0; i < count; i++) {
+                SessionMessage large = expect(bobInbox.next(), SessionMessage.Type.TASK_COMPLETED, "alice");
+                check(large.getDescription().equals(i + longDescription) && large.getXpReward() == i,
+                        "message " + i + " of the oversize batch arrived wrong or out of order");
+            }
+            System.out.println("✅ batch larger than a frame");
+
+            // Too large for any frame, by size or by string length: refused up front
+            check(!alice.sendTaskCompleted("y".repeat(SessionMessage.MAX_FRAME_SIZE), 1, 1), "oversize message was queued");
+            check(!alice.sendTaskCompleted("é".repeat(40_000), 1, 1), "string over 65535 UTF-8 bytes was queued");
+            check(bob.sendXpChanged(3, 0, 70), "message after a refused one not queued");
+            expect(aliceInbox.next(), SessionMessage.Type.XP_CHANGED, "bob");
+            check(bobInbox.messages.isEmpty(), "a refused message reached the other client");
+            System.out.println("✅ unsendable messages refused, connection kept");
+
+            // A member that joins and never reads is dropped once it is too far behind, and the others hear it left
+            try (SocketChannel stalled = SocketChannel.open()) {
+                stalled.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+                stalled.connect(new InetSocketAddress("localhost", server.getPort()));
+                for (ByteBuffer frame : SessionMessage.encodeBatches(List.of(SessionMessage.join("room", "carol")))) {
+                    while (frame.hasRemaining()) stalled.write(frame);
+                }
+                expect(aliceInbox.next(), SessionMessage.Type.JOIN, "carol");
+                expect(bobInbox.next(), SessionMessage.Type.JOIN, "carol");
+                String huge = "z".repeat(60_000);
+                int sent = 0;
+                SessionMessage received;
+                do {
+                    // Sent in steps so bob, who does read, keeps up
+                    if (sent < 500) {
+                        check(alice.sendTaskCompleted(huge, sent, 0), "large message not queued");
+                        sent++;
+                    }
+                    received = bobInbox.next();
+                } while (received.getType() != SessionMessage.Type.LEAVE);
+                expect(received, SessionMessage.Type.LEAVE, "carol");
+                expect(aliceInbox.next(), SessionMessage.Type.LEAVE, "carol");
+            }
+            // Whatever alice sent after carol was dropped still reaches bob
+            while (bobInbox.messages.poll(200, TimeUnit.MILLISECONDS) != null) {
+            }
+            System.out.println("✅ client that stops reading dropped");
+
+            bob.close();
+            expect(aliceInbox.next(), SessionMessage.Type.LEAVE, "bob");
+            check(!bobInbox.disconnected, "closing reported a disconnect");
+            System.out.println("✅ leave");
+
+            // The server going away is reported once, and the client stops taking messages
+            server.stop();
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (!aliceInbox.disconnected) {
+                check(System.currentTimeMillis() < deadline, "server shutdown was not reported");
+                Thread.sleep(10);
+            }
+            check(!alice.sendXpChanged(4, 0, 0), "message queued after the server went away");
+            System.out.println("✅ server gone");
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void awaitSessions(SessionServer server, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (server.getSessionCount() < count) {
+            check(System.currentTimeMillis() < deadline, "session was never created");
+            Thread.sleep(10);
+        }
+    }
+
+    private static SessionMessage expect(SessionMessage message, SessionMessage.Type type, String username) {
+        check(message.getType() == type && message.getUsername().equals(username),
+                "expected " + type + " from " + username + ", got " + message);
+        return message;
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) throw new AssertionError(failure);
+    }
+}
@@ -0,0 +1,228 @@
+//network->SessionMessage
+package network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One event exchanged through the session relay.
+ * Messages travel in batches: [int frame length][short count][message]...
+ * and each message is a type byte followed by only the fields that type uses,
+ * with strings written as [short length][UTF-8 bytes].
+ * Frames are cut by encoded size, so a single message must fit in MAX_MESSAGE_SIZE;
+ * check isSendable before queueing one built from user input.
+ */
+public class SessionMessage {
+    public static final int MAX_FRAME_SIZE = 64 * 1024;
+    private static final int FRAME_HEADER = 4 + 2; // Frame length and message count
+    public static final int MAX_MESSAGE_SIZE = MAX_FRAME_SIZE - FRAME_HEADER;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int MAX_BATCH_COUNT = 0xFFFF;
+
+    public enum Type {
+        JOIN, LEAVE, TASK_COMPLETED, XP_CHANGED;
+
+        private static final Type[] VALUES = values();
+    }
+
+    private final Type type;
+    private final String username;
+    private final String text;  // Session ID for JOIN, task description for TASK_COMPLETED
+    private final int first;    // TASK_COMPLETED: xp reward, XP_CHANGED: level
+    private final int second;   // TASK_COMPLETED: coin reward, XP_CHANGED: xp
+    private final int third;    // XP_CHANGED: coins
+
+    private SessionMessage(Type type, String username, String text, int first, int second, int third) {
+        this.type = type;
+        this.username = username;
+        this.text = text;
+        this.first = first;
+        this.second = second;
+        this.third = third;
+    }
+
+    public static SessionMessage join(String sessionId, String username) {
+        return new SessionMessage(Type.JOIN, username, sessionId, 0, 0, 0);
+    }
+
+    public static SessionMessage leave(String username) {
+        return new SessionMessage(Type.LEAVE, username, "", 0, 0, 0);
+    }
+
+    public static SessionMessage taskCompleted(String username, String description, int xp, int coins) {
+        return new SessionMessage(Type.TASK_COMPLETED, username, description, xp, coins, 0);
+    }
+
+    public static SessionMessage xpChanged(String username, int level, int xp, int coins) {
+        return new SessionMessage(Type.XP_CHANGED, username, "", level, xp, coins);
+    }
+
+    public Type getType() { return type; }
+    public String getUsername() { return username; }
+    public String getSessionId() { return text; }
+    public String getDescription() { return text; }
+    public int getXpReward() { return first; }
+    public int getCoinReward() { return second; }
+    public int getLevel() { return first; }
+    public int getXp() { return second; }
+    public int getCoins() { return third; }
+
+    // Bytes this message takes inside a frame
+    public int getEncodedSize() {
+        int size = 1 + stringSize(username);
+        return switch (type) {
+            case JOIN -> size + stringSize(text);
+            case LEAVE -> size;
+            case TASK_COMPLETED -> size + stringSize(text) + 8;
+            case XP_CHANGED -> size + 12;
+        };
+    }
+
+    // False if the message can never fit in a frame (e.g. a huge task description)
+    public boolean isSendable() {
+        return getEncodedSize() <= MAX_MESSAGE_SIZE
+                && utf8Length(username) <= MAX_STRING_BYTES && utf8Length(text) <= MAX_STRING_BYTES;
+    }
+
+    // Encode any number of messages as frames of at most MAX_FRAME_SIZE bytes, in order
+    public static List<ByteBuffer> encodeBatches(List<SessionMessage> messages) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        List<SessionMessage> batch = new ArrayList<>();
+        int size = FRAME_HEADER;
+        for (SessionMessage message : messages) {
+            int messageSize = message.getEncodedSize();
+            if (!batch.isEmpty() && (size + messageSize > MAX_FRAME_SIZE || batch.size() == MAX_BATCH_COUNT)) {
+                frames.add(encodeBatch(batch));
+                batch.clear();
+                size = FRAME_HEADER;
+            }
+            batch.add(message);
+            size += messageSize;
+        }
+        if (!batch.isEmpty()) frames.add(encodeBatch(batch));
+        return frames;
+    }
+
+    // Encode a batch of messages as one length-prefixed frame; use encodeBatches unless the batch is known to fit
+    public static ByteBuffer encodeBatch(List<SessionMessage> messages) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + messages.size() * 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // Frame length, filled in below
+            out.writeShort(messages.size());
+            for (SessionMessage message : messages) {
+                message.writeTo(out);
+            }
+            out.flush();
+
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            if (frame.limit() > MAX_FRAME_SIZE) {
+                throw new IllegalArgumentException("Batch too large: " + frame.limit() + " bytes");
+            }
+            frame.putInt(0, frame.limit() - 4);
+            return frame;
+        } catch (IOException e) {
+            // Writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Decode the body of one frame (everything after the length prefix)
+    public static List<SessionMessage> decodeBatch(ByteBuffer body) throws IOException {
+        try {
+            int count = body.getShort() & 0xFFFF;
+            List<SessionMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                messages.add(readFrom(body));
+            }
+            return messages;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed session frame", e);
+        }
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeString(out, username);
+        switch (type) {
+            case JOIN -> writeString(out, text);
+            case LEAVE -> { }
+            case TASK_COMPLETED -> {
+                writeString(out, text);
+                out.writeInt(first);
+                out.writeInt(second);
+            }
+            case XP_CHANGED -> {
+                out.writeInt(first);
+                out.writeInt(second);
+                out.writeInt(third);
+            }
+        }
+    }
+
+    private static SessionMessage readFrom(ByteBuffer in) {
+        Type type = Type.VALUES[in.get()];
+        String username = readString(in);
+        return switch (type) {
+            case JOIN -> join(readString(in), username);
+            case LEAVE -> leave(username);
+            case TASK_COMPLETED -> taskCompleted(username, readString(in), in.getInt(), in.getInt());
+            case XP_CHANGED -> xpChanged(username, in.getInt(), in.getInt(), in.getInt());
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            // The length is written as a short; more would corrupt the frame
+            throw new IllegalArgumentException("String too long for a session message: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int stringSize(String value) {
+        return 2 + utf8Length(value);
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case JOIN -> "👋 " + username + " joined the session";
+            case LEAVE -> "🚪 " + username + " left the session";
+            case TASK_COMPLETED -> "✅ " + username + " completed " + text + " (+" + first + " XP, +" + second + " Coins)";
+            case XP_CHANGED -> "⭐ " + username + " is now level " + first + " with " + second + " XP";
+        };
+    }
+}
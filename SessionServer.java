@@ -0,0 +1,292 @@
+//network->SessionServer
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lightweight relay for networked multiplayer sessions.
+ * A single selector thread serves every connection. Clients send JOIN with a
+ * session ID, after which everything they send is relayed to the other members
+ * of that session. Messages bound for a client during one selector pass are
+ * batched into a single frame. A client that falls more than MAX_QUEUED_BYTES
+ * behind is disconnected rather than buffered without limit.
+ *
+ * Run locally with: java network.SessionServer [port]
+ */
+public class SessionServer implements Runnable {
+    public static final int DEFAULT_PORT = 5055;
+    public static final int MAX_QUEUED_BYTES = 16 * SessionMessage.MAX_FRAME_SIZE;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<String, Set<Connection>> sessions = new HashMap<>();
+    private final Set<Connection> pendingFlush = new LinkedHashSet<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    // One connected client and its buffers
+    private static class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(SessionMessage.MAX_FRAME_SIZE);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private final List<SessionMessage> outgoing = new ArrayList<>();
+        private long queuedBytes; // In out, not yet written to the socket
+        private String sessionId;
+        private String username;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // Use port 0 to pick any free port (see getPort)
+    public SessionServer(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public synchronized int getSessionCount() {
+        return sessions.size();
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "session-server");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("✅ Session server listening on port " + getPort());
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            if (thread != null) thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        disconnect(key);
+                    } catch (RuntimeException e) {
+                        // A bug or bad input on one connection must not take the others down
+                        e.printStackTrace();
+                        disconnect(key);
+                    }
+                }
+                flushBatches();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.channel.read(connection.in) < 0) {
+            disconnect(key);
+            return;
+        }
+
+        // Handle every complete frame in the buffer, keep any partial one for the next read
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 2 || length > SessionMessage.MAX_FRAME_SIZE - 4) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (in.remaining() < 4 + length) break;
+
+            ByteBuffer body = in.slice(in.position() + 4, length);
+            in.position(in.position() + 4 + length);
+            for (SessionMessage message : SessionMessage.decodeBatch(body)) {
+                handle(connection, message);
+            }
+        }
+        in.compact();
+    }
+
+    private void handle(Connection connection, SessionMessage message) {
+        if (message.getType() == SessionMessage.Type.JOIN) {
+            if (connection.sessionId != null) return; // One session per connection
+            connection.sessionId = message.getSessionId();
+            connection.username = message.getUsername();
+            Set<Connection> members;
+            synchronized (this) {
+                members = sessions.computeIfAbsent(connection.sessionId, id -> new LinkedHashSet<>());
+            }
+            // Tell the newcomer who is already here
+            for (Connection member : members) {
+                enqueue(connection, SessionMessage.join(member.sessionId, member.username));
+            }
+            members.add(connection);
+            broadcast(connection, message);
+            return;
+        }
+
+        // Only members of a session may send events, and only under their own name
+        if (connection.sessionId == null || !connection.username.equals(message.getUsername())) return;
+        if (message.getType() == SessionMessage.Type.LEAVE) {
+            leaveSession(connection);
+            return;
+        }
+        broadcast(connection, message);
+    }
+
+    private void broadcast(Connection sender, SessionMessage message) {
+        Set<Connection> members = sessions.get(sender.sessionId);
+        if (members == null) return;
+        for (Connection member : members) {
+            if (member != sender) {
+                enqueue(member, message);
+            }
+        }
+    }
+
+    private void enqueue(Connection connection, SessionMessage message) {
+        if (!message.isSendable()) {
+            System.out.println("⚠️ Dropping a session message too large to relay (" + message.getEncodedSize() + " bytes)");
+            return;
+        }
+        connection.outgoing.add(message);
+        pendingFlush.add(connection);
+    }
+
+    // Turn each connection's queued messages into as few frames as fit, once per selector pass
+    private void flushBatches() {
+        // Disconnecting a member queues LEAVE for the others, so go again until nothing is left
+        while (!pendingFlush.isEmpty()) {
+            List<Connection> flushing = new ArrayList<>(pendingFlush);
+            pendingFlush.clear();
+            for (Connection connection : flushing) {
+                SelectionKey key = connection.channel.keyFor(selector);
+                if (key == null || !key.isValid()) continue;
+                try {
+                    for (ByteBuffer frame : SessionMessage.encodeBatches(connection.outgoing)) {
+                        connection.out.add(frame);
+                        connection.queuedBytes += frame.remaining();
+                    }
+                    connection.outgoing.clear();
+                    if (connection.queuedBytes > MAX_QUEUED_BYTES) {
+                        System.out.println("⚠️ Dropping slow session client " + connection.username + " ("
+                                + connection.queuedBytes + " bytes waiting)");
+                        disconnect(key);
+                        continue;
+                    }
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    disconnect(key);
+                }
+            }
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        while (!connection.out.isEmpty()) {
+            ByteBuffer buffer = connection.out.peek();
+            connection.queuedBytes -= connection.channel.write(buffer);
+            if (buffer.hasRemaining()) return; // Socket is full, wait for the next OP_WRITE
+            connection.out.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void leaveSession(Connection connection) {
+        if (connection.sessionId == null) return;
+        Set<Connection> members = sessions.get(connection.sessionId);
+        if (members != null) {
+            members.remove(connection);
+            for (Connection member : members) {
+                enqueue(member, SessionMessage.leave(connection.username));
+            }
+            if (members.isEmpty()) {
+                synchronized (this) {
+                    sessions.remove(connection.sessionId);
+                }
+            }
+        }
+        connection.sessionId = null;
+    }
+
+    private void disconnect(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        key.cancel();
+        if (connection == null) return;
+        leaveSession(connection);
+        pendingFlush.remove(connection);
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SessionServer server = new SessionServer(port);
+        server.running = true;
+        System.out.println("✅ Session server listening on port " + server.getPort());
+        server.run();
+    }
+}
@@ -0,0 +1,116 @@
+//app->StartupBenchmark
+package org.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures cold start time to the first LoginScreen frame, with and without an
+ * AppCDS (class data sharing) archive.
+ *
+ * The archive is built by a training run that starts the app with
+ * -XX:ArchiveClassesAtExit and exits once startup is done (see App.EXIT_AFTER_STARTUP).
+ * Every class loaded on the way (Swing, Gson, Firebase) is then stored pre-parsed,
+ * so later launches map it from the archive instead of loading it from the jars.
+ *
+ * Build the archive and compare, using the same classpath as the app:
+ *   java -cp <classpath> org.app.StartupBenchmark [runs] [archive]
+ * Launch the app with the archive:
+ *   java -XX:SharedArchiveFile=study-leveling.jsa -cp <classpath> org.app.App
+ * Delete the archive after changing the classpath or JDK; it is rebuilt on the next run.
+ */
+public class StartupBenchmark {
+    public static final String DEFAULT_ARCHIVE = "study-leveling.jsa";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        File archive = new File(args.length > 1 ? args[1] : DEFAULT_ARCHIVE);
+
+        // The JVM refuses to archive classes loaded from a (non-empty) directory
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(entry);
+            if (file.isDirectory() && file.list() != null && file.list().length > 0) {
+                System.out.println("❌ AppCDS needs the app on the classpath as jars, not " + entry);
+                return;
+            }
+        }
+
+        if (!archive.exists()) {
+            System.out.println("Training run, writing " + archive + "...");
+            launch("-XX:ArchiveClassesAtExit=" + archive.getPath());
+            if (!archive.exists()) {
+                System.out.println("❌ No archive was written; this JDK may not support AppCDS.");
+                return;
+            }
+        }
+
+        List<Long> plain = new ArrayList<>();
+        List<Long> shared = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            // Alternate so both sides see the same disk cache and machine load
+            plain.add(launch("-Xshare:auto"));
+            shared.add(launch("-XX:SharedArchiveFile=" + archive.getPath()));
+        }
+
+        long plainMedian = median(plain);
+        long sharedMedian = median(shared);
+        if (plainMedian < 0 || sharedMedian < 0) {
+            System.out.println("❌ The app never reported a first frame (no display available?)");
+            return;
+        }
+        System.out.println("First frame without archive: " + plainMedian + " ms (" + summary(plain) + ") " + plain);
+        System.out.println("First frame with archive:    " + sharedMedian + " ms (" + summary(shared) + ") " + shared);
+        if (plainMedian > 0) {
+            System.out.printf("Saved %d ms (%.0f%%)%n", plainMedian - sharedMedian,
+                    100.0 * (plainMedian - sharedMedian) / plainMedian);
+        }
+    }
+
+    // Starts the app in a fresh JVM and returns its reported time to first frame, or -1
+    private static long launch(String jvmOption) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, jvmOption,
+                "-D" + App.EXIT_AFTER_STARTUP + "=true",
+                "-cp", System.getProperty("java.class.path"),
+                App.class.getName());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+
+        long firstFrame = -1;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                int at = line.indexOf(App.FIRST_FRAME_PREFIX);
+                if (at >= 0) {
+                    firstFrame = Long.parseLong(line.substring(at + App.FIRST_FRAME_PREFIX.length()).trim());
+                }
+            }
+        }
+        process.waitFor();
+        return firstFrame;
+    }
+
+    // Median of the runs that reported a first frame, or -1 if none did
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>();
+        for (long value : values) {
+            if (value >= 0) sorted.add(value);
+        }
+        if (sorted.isEmpty()) return -1;
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static String summary(List<Long> values) {
+        long failed = values.stream().filter(value -> value < 0).count();
+        String median = "median of " + (values.size() - failed);
+        return failed == 0 ? median : median + ", " + failed + " reported no first frame";
+    }
+}
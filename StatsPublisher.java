@@ -0,0 +1,285 @@
+//util->StatsPublisher
+package util;
+
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+import models.User;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The one path for sending user stats to the leaderboard backend.
+ * Callers hand over a user and return immediately: a snapshot of the stats is
+ * queued and a dedicated sender thread pushes whatever has piled up as one batch.
+ * Only the newest snapshot per username is kept (last write wins), so a burst of
+ * completed tasks turns into a single upload. The queue holds at most
+ * MAX_PENDING users; beyond that the oldest pending user is dropped and counted.
+ * A batch that fails goes back to the front of the queue, minus the users who have
+ * published again since, and is retried after RETRY_DELAY_MS.
+ */
+public class StatsPublisher {
+    public static final int MAX_PENDING = 1024;
+    public static final long RETRY_DELAY_MS = 5000;
+
+    private static StatsPublisher instance;
+
+    // Everything the sender needs, copied on the caller's thread so the User is never read concurrently
+    private static class Snapshot {
+        private final long seq;
+        private final LeaderboardEntry entry;
+        private final List<String> groups;
+        private final long day;
+        private final int dayXp;
+
+        private Snapshot(User user, long seq) {
+            this.seq = seq;
+            entry = LeaderboardEntry.fromUser(user);
+            groups = new ArrayList<>(user.getLeaderboardGroups());
+            day = LeaderboardWindow.currentDay();
+            dayXp = user.getRecentXp().getDay(day);
+        }
+    }
+
+    private final LinkedHashMap<String, Snapshot> pending = new LinkedHashMap<>(); // Oldest first
+    private final Map<String, Long> newest; // Seq of each user's last snapshot, to tell whether a failed one is stale
+    private final int capacity;
+    private final Thread sender;
+
+    // Metrics, guarded by this
+    private long published;
+    private long coalesced;
+    private long dropped;
+    private long batchesSent;
+    private long entriesSent;
+    private long failures;
+    private long retried;
+    private boolean sending;
+    private int inFlight;   // Batches handed to the backend whose writes haven't finished
+    private long retryAt;   // Nothing is sent before this after a failure
+    private long nextSeq;
+
+    public StatsPublisher(int capacity) {
+        this.capacity = capacity;
+        newest = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+        sender = new Thread(this::sendLoop, "stats-publisher");
+        sender.setDaemon(true);
+        sender.start();
+        // Don't lose the last few updates when the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(2000)));
+    }
+
+    public static synchronized StatsPublisher getInstance() {
+        if (instance == null) {
+            instance = new StatsPublisher(MAX_PENDING);
+        }
+        return instance;
+    }
+
+    // Queue the user's current stats for upload
+    public void publish(User user) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = new Snapshot(user, nextSeq++);
+        }
+        // Keep the local leaderboard copy current so it shows our own stats right away
+        LeaderboardCache.getInstance().update(snapshot.entry);
+        enqueue(snapshot);
+    }
+
+    public void publishAll(List<User> users) {
+        for (User user : users) {
+            publish(user);
+        }
+    }
+
+    private synchronized void enqueue(Snapshot snapshot) {
+        published++;
+        // Re-inserting moves the user to the back, so the oldest entry is always first
+        if (pending.remove(snapshot.entry.getUsername()) != null) {
+            coalesced++;
+        } else if (pending.size() >= capacity) {
+            Iterator<String> oldest = pending.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+            dropped++;
+        }
+        pending.put(snapshot.entry.getUsername(), snapshot);
+        newest.remove(snapshot.entry.getUsername());
+        newest.put(snapshot.entry.getUsername(), snapshot.seq);
+        notifyAll();
+    }
+
+    private void sendLoop() {
+        while (true) {
+            List<Snapshot> batch;
+            synchronized (this) {
+                // After a failure, hold off until the retry time even if more users have published meanwhile
+                while (pending.isEmpty() || System.currentTimeMillis() < retryAt) {
+                    try {
+                        wait(pending.isEmpty() ? 0 : Math.max(1, retryAt - System.currentTimeMillis()));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                sending = true;
+            }
+
+            boolean ok = send(batch);
+
+            synchronized (this) {
+                sending = false;
+                batchesSent++;
+                entriesSent += batch.size();
+                if (!ok) failed(batch);
+                notifyAll();
+            }
+        }
+    }
+
+    // False if the batch couldn't be handed over; a failure in the backend afterwards is counted when it is reported
+    private boolean send(List<Snapshot> batch) {
+        try {
+            LeaderboardService service = LeaderboardServices.getDefault();
+            List<LeaderboardEntry> entries = new ArrayList<>(batch.size());
+            for (Snapshot snapshot : batch) {
+                entries.add(snapshot.entry);
+            }
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            writes.add(service.submitAll(entries));
+
+            for (Snapshot snapshot : batch) {
+                writes.add(service.submitToGroups(snapshot.entry, snapshot.groups));
+                // Feeds the daily/weekly/monthly boards with what the user gained today
+                if (snapshot.dayXp > 0) {
+                    writes.add(service.submitDailyXp(snapshot.entry, snapshot.day, snapshot.dayXp));
+                }
+            }
+            synchronized (this) {
+                inFlight++;
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                    .whenComplete((done, error) -> written(batch, error));
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("❌ Failed to upload stats.");
+            return false;
+        }
+    }
+
+    private void written(List<Snapshot> batch, Throwable error) {
+        if (error == null) {
+            System.out.println("✅ Uploaded stats for " + batch.size() + " user(s).");
+        } else {
+            error.printStackTrace();
+            System.out.println("❌ Failed to upload stats.");
+        }
+        synchronized (this) {
+            inFlight--;
+            if (error != null) failed(batch);
+            notifyAll();
+        }
+    }
+
+    // Puts a failed batch back at the front of the queue, skipping users whose newer snapshot was published since
+    private void failed(List<Snapshot> batch) {
+        failures++;
+        retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+        LinkedHashMap<String, Snapshot> requeued = new LinkedHashMap<>();
+        for (Snapshot snapshot : batch) {
+            String username = snapshot.entry.getUsername();
+            Long latest = newest.get(username);
+            if (latest == null || latest == snapshot.seq) {
+                requeued.put(username, snapshot);
+            }
+        }
+        retried += requeued.size();
+        requeued.putAll(pending);
+        pending.clear();
+        pending.putAll(requeued);
+        Iterator<String> oldest = pending.keySet().iterator();
+        while (pending.size() > capacity) {
+            oldest.next();
+            oldest.remove();
+            dropped++;
+        }
+    }
+
+    // Waits until everything queued so far has been stored by the backend, or the timeout passes.
+    // A failed batch is queued again, so this keeps waiting through its retry.
+    public synchronized boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!pending.isEmpty() || sending || inFlight > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getPublishedCount() {
+        return published;
+    }
+
+    // Updates replaced by a newer one for the same user before they were sent
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    // Updates thrown away because the queue was full
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getBatchesSent() {
+        return batchesSent;
+    }
+
+    public synchronized long getEntriesSent() {
+        return entriesSent;
+    }
+
+    // Batches that couldn't be handed over, or that the backend failed to store afterwards
+    public synchronized long getFailedBatches() {
+        return failures;
+    }
+
+    // Snapshots put back in the queue after their batch failed
+    public synchronized long getRetriedCount() {
+        return retried;
+    }
+
+    public synchronized Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("published", published);
+        metrics.put("coalesced", coalesced);
+        metrics.put("dropped", dropped);
+        metrics.put("pending", (long) pending.size());
+        metrics.put("batchesSent", batchesSent);
+        metrics.put("entriesSent", entriesSent);
+        metrics.put("failedBatches", failures);
+        metrics.put("retried", retried);
+        return metrics;
+    }
+}
@@ -5,7 +5,10 @@ import util.DataManager;
 import util.TaskSelector;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.util.Arrays;
 import java.util.List;
 
 public class StudyScreen extends JFrame {
@@ -13,6 +16,7 @@ public class StudyScreen extends JFrame {
     private final DefaultListModel<Task> recommendedListModel = new DefaultListModel<>();
     private final JList<Task> taskList = new JList<>(taskListModel);
     private final JList<Task> recommendedList = new JList<>(recommendedListModel);
+    private final JTextField searchField = new JTextField();
     private final MainMenu mainMenu;
     private final models.User user;
 
@@ -44,6 +48,7 @@ public class StudyScreen extends JFrame {
         JTextField xpField = new JTextField("50", 3);
         JTextField coinField = new JTextField("20", 3);
         JComboBox<Task.Difficulty> difficultyBox = new JComboBox<>(Task.Difficulty.values());
+        JTextField tagsField = new JTextField(8);
         JButton addTask = createStyledButton("Add Task");
 
         JPanel inputPanel = new JPanel(new BorderLayout());
@@ -59,6 +64,8 @@ public class StudyScreen extends JFrame {
         rewardPanel.add(coinField);
         rewardPanel.add(new JLabel("⚙ Difficulty:"));
         rewardPanel.add(difficultyBox);
+        rewardPanel.add(new JLabel("🏷 Subjects:"));
+        rewardPanel.add(tagsField);
 
         mainPanel.add(inputPanel);
         mainPanel.add(rewardPanel);
@@ -70,6 +77,13 @@ public class StudyScreen extends JFrame {
         allTasksPanel.setOpaque(false);
         allTasksPanel.add(allTasksLabel, BorderLayout.NORTH);
         allTasksPanel.add(new JScrollPane(taskList), BorderLayout.CENTER);
+
+        // Filters the list as you type, through the account's task search index
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.setOpaque(false);
+        searchPanel.add(new JLabel("🔍 Search: "), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        allTasksPanel.add(searchPanel, BorderLayout.SOUTH);
         mainPanel.add(allTasksPanel);
 
         // === Buttons ===
@@ -93,8 +107,10 @@ public class StudyScreen extends JFrame {
                 Task.Difficulty difficulty = (Task.Difficulty) difficultyBox.getSelectedItem();
                 if (!desc.isEmpty() && difficulty != null) {
                     Task task = new Task(desc, xp, coins, difficulty);
-                    user.getTasks().add(task);
-                    taskListModel.addElement(task);
+                    String tags = tagsField.getText();
+                    if (!tags.isBlank()) task.setTags(Arrays.asList(tags.split(","))); // Comma-separated, e.g. "math, exam"
+                    user.addTask(task);
+                    filterTasks();
                     taskField.setText("");
                     updateRecommendedList();
                     DataManager.saveUser(user);
@@ -120,32 +136,57 @@ public class StudyScreen extends JFrame {
                 updateRecommendedList();
                 DataManager.saveUser(user);
 
-                // Upload stats to Firebase leaderboard whenever a task is completed
-                util.FirebaseManager.uploadUserStats(user);
+                // Queue stats for the leaderboard whenever a task is completed
+                util.StatsPublisher.getInstance().publish(user);
             }
         });
 
         deleteTask.addActionListener(e -> {
             Task task = taskList.getSelectedValue();
             if (task != null) {
-                user.getTasks().remove(task);
+                user.removeTask(task);
                 taskListModel.removeElement(task);
                 updateRecommendedList();
                 DataManager.saveUser(user);
             }
         });
 
-        user.getTasks().forEach(taskListModel::addElement);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTasks();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTasks();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTasks();
+            }
+        });
+
+        filterTasks();
         updateRecommendedList();
 
         setVisible(true);
     }
 
+    // Shows the tasks matching the search box, or all of them when it's empty
+    private void filterTasks() {
+        String query = searchField.getText();
+        List<Task> shown = query.isBlank() ? user.getTasks() : user.searchTasks(query);
+        taskListModel.clear();
+        taskListModel.addAll(shown);
+    }
+
     private void updateRecommendedList() {
         recommendedListModel.clear();
 
         // Use the new prioritizeTasks method to get tasks sorted by priority
-        List<Task> prioritizedTasks = TaskSelector.prioritizeTasks(user.getTasks());
+        List<Task> prioritizedTasks = TaskSelector.prioritizeTasks(user);
 
         // Add prioritized tasks to the recommended list
         for (Task task : prioritizedTasks) {
@@ -1,36 +1,122 @@
 package models;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
 
+// Stored compactly, since accounts with a long history hold many of these:
+// the ID as the two halves of its UUID and the difficulty, flags and completion
+// day packed into one int. TaskJsonAdapter keeps the saved JSON unchanged.
+@JsonAdapter(TaskJsonAdapter.class)
 public class Task {
+    private static final int DIFFICULTY_MASK = 0b11;
+    private static final int COMPLETED = 1 << 2;
+    private static final int CHANGED = 1 << 3; // Changed since the account was last saved
+    private static final int DAY_SHIFT = 4; // Upper 28 bits: completion epoch day + DAY_BIAS, 0 = no date
+    private static final long DAY_BIAS = 1L << 27;
+
+    private long idHigh; // Stable identity, survives renames and duplicate descriptions; 0 and 0 = not assigned yet
+    private long idLow;
+    private String otherId; // Only for an ID that isn't in UUID form
     private String description;
     private int xpReward;
     private int coinReward;
-    private Difficulty difficulty;
-    private boolean completed;
-    private LocalDate completionDate;
+    private int state;
+    private String[] tags; // Subjects like "math", lower-case; null when there are none
+    private User owner; // Account whose lookup indexes hold this task, told when its completion or tags change
 
     public enum Difficulty {
         EASY, MEDIUM, HARD
     }
 
-    // No-arg constructor for Gson
     public Task() {
-        this.description = "";
-        this.xpReward = 0;
-        this.coinReward = 0;
-        this.difficulty = Difficulty.EASY;
-        this.completed = false;
-        this.completionDate = null;
+        this("", 0, 0, Difficulty.EASY);
     }
 
     public Task(String description, int xp, int coins, Difficulty difficulty) {
-        this.description = description;
+        UUID id = UUID.randomUUID();
+        this.idHigh = id.getMostSignificantBits();
+        this.idLow = id.getLeastSignificantBits();
+        this.description = DescriptionPool.intern(description);
+        this.xpReward = xp;
+        this.coinReward = coins;
+        this.state = (difficulty != null ? difficulty : Difficulty.EASY).ordinal();
+    }
+
+    // For TaskJsonAdapter: no ID yet, the stored one is set next
+    Task(String description, int xp, int coins, int state) {
+        this.description = DescriptionPool.intern(description);
         this.xpReward = xp;
         this.coinReward = coins;
-        this.difficulty = (difficulty != null) ? difficulty : Difficulty.EASY;
-        this.completed = false;
-        this.completionDate = null;
+        this.state = state;
+    }
+
+    // Copy that keeps the same ID, used when moving a task into another account
+    public Task copy() {
+        getId(); // Both copies must share the ID, so assign one now if there is none
+        Task copy = new Task(description, xpReward, coinReward, state & ~CHANGED);
+        copy.idHigh = idHigh;
+        copy.idLow = idLow;
+        copy.otherId = otherId;
+        copy.tags = tags;
+        return copy;
+    }
+
+    public String getId() {
+        if (otherId != null) return otherId;
+        assignId();
+        return new UUID(idHigh, idLow).toString();
+    }
+
+    // Tasks saved before IDs existed get one the first time they are asked for it
+    private void assignId() {
+        if (idHigh == 0 && idLow == 0) {
+            UUID id = UUID.randomUUID();
+            idHigh = id.getMostSignificantBits();
+            idLow = id.getLeastSignificantBits();
+        }
+    }
+
+    void setId(String id) {
+        UUID uuid = canonicalUuid(id);
+        if (uuid != null) {
+            idHigh = uuid.getMostSignificantBits();
+            idLow = uuid.getLeastSignificantBits();
+            otherId = null;
+        } else {
+            otherId = id; // Kept as it is
+        }
+    }
+
+    // The ID as a UUID if it is one written the way UUID.toString writes it, else null
+    static UUID canonicalUuid(String id) {
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The packed ID for TaskIdIndex, assigned first if there is none; only meaningful when getOtherId() is null
+    long getIdHigh() {
+        assignId();
+        return idHigh;
+    }
+
+    long getIdLow() {
+        assignId();
+        return idLow;
+    }
+
+    String getOtherId() {
+        return otherId;
     }
 
     public String getDescription() {
@@ -46,33 +132,102 @@ public class Task {
     }
 
     public Difficulty getDifficulty() {
-        return (difficulty != null) ? difficulty : Difficulty.EASY;
+        return Difficulty.values()[state & DIFFICULTY_MASK];
     }
 
     public boolean isCompleted() {
-        return completed;
+        return (state & COMPLETED) != 0;
     }
 
     public void setCompleted(boolean completed) {
-        this.completed = completed;
+        boolean wasCompleted = isCompleted();
+        state = (completed ? state | COMPLETED : state & ~COMPLETED) | CHANGED;
+        if (owner != null && wasCompleted != completed) owner.taskFacetsChanged(this, getTags());
 
         // Only set completion date if it's being marked as completed and doesn't already have a date
-        if (completed && this.completionDate == null) {
-            this.completionDate = LocalDate.now();
+        if (completed && getCompletionDate() == null) {
+            setCompletionDate(LocalDate.now());
         }
     }
 
     public LocalDate getCompletionDate() {
-        return completionDate;
+        int day = state >>> DAY_SHIFT;
+        return day == 0 ? null : LocalDate.ofEpochDay(day - DAY_BIAS);
     }
 
     public void setCompletionDate(LocalDate completionDate) {
-        this.completionDate = completionDate;
+        long day = 0;
+        if (completionDate != null) {
+            day = completionDate.toEpochDay() + DAY_BIAS;
+            if (day <= 0 || day >= 1L << (32 - DAY_SHIFT)) {
+                throw new IllegalArgumentException("Completion date out of range: " + completionDate);
+            }
+        }
+        state = (state & ((1 << DAY_SHIFT) - 1)) | ((int) day << DAY_SHIFT) | CHANGED;
+    }
+
+    public List<String> getTags() {
+        return tags == null ? List.of() : List.of(tags);
+    }
+
+    public boolean hasTag(String tag) {
+        if (tags == null) return false;
+        for (String own : tags) {
+            if (own.equals(tag)) return true;
+        }
+        return false;
+    }
+
+    // Trimmed, lower-cased and de-duplicated; blank tags are dropped
+    public void setTags(Collection<String> tags) {
+        List<String> previous = getTags();
+        initTags(tags);
+        state |= CHANGED;
+        if (owner != null) owner.taskFacetsChanged(this, previous);
+    }
+
+    // For TaskJsonAdapter: loading a task doesn't count as a change
+    void initTags(Collection<String> tags) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                String clean = tag == null ? "" : tag.trim().toLowerCase(Locale.ROOT);
+                if (!clean.isEmpty()) normalized.add(DescriptionPool.intern(clean));
+            }
+        }
+        this.tags = normalized.isEmpty() ? null : normalized.toArray(new String[0]);
+    }
+
+    public boolean isChanged() {
+        return (state & CHANGED) != 0;
+    }
+
+    void setChanged(boolean changed) {
+        state = changed ? state | CHANGED : state & ~CHANGED;
+    }
+
+    User getOwner() {
+        return owner;
+    }
+
+    void setOwner(User owner) {
+        this.owner = owner;
+    }
+
+    // Difficulty ordinal and completed bit, as TaskJsonAdapter builds them
+    static int packState(Difficulty difficulty, boolean completed) {
+        return (difficulty != null ? difficulty : Difficulty.EASY).ordinal() | (completed ? COMPLETED : 0);
     }
 
     @Override
     public String toString() {
-        String status = completed ? "✓" : "○";
-        return status + " " + description + " [" + difficulty + "] ⭐" + xpReward + " 💰" + coinReward;
+        String status = isCompleted() ? "✓" : "○";
+        StringBuilder text = new StringBuilder(status + " " + description + " [" + getDifficulty() + "] ⭐" + xpReward + " 💰" + coinReward);
+        if (tags != null) {
+            for (String tag : tags) {
+                text.append(" #").append(tag);
+            }
+        }
+        return text.toString();
     }
 }
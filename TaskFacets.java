@@ -0,0 +1,207 @@
+//util->TaskFacets
+package util;
+
+import models.Task;
+
+import java.util.*;
+
+/**
+ * Bitmap indexes over one account's tasks: a bitmap of task slots per tag, per
+ * difficulty, and for completed tasks. Counting e.g. completed HARD "math" tasks
+ * is an AND of three bitmaps and a popcount instead of a pass over the history.
+ * Slots are given out in the order tasks were added, so lists come back in that order.
+ *
+ * Adds and removes are applied as they happen, and User passes on a task's
+ * completion or tag changes to update(), so the bitmaps never need rebuilding
+ * while the account is loaded. Not thread-safe.
+ */
+public class TaskFacets {
+    private final List<Task> tasksBySlot = new ArrayList<>(); // null where a task was removed
+    private final Map<Task, Integer> slots = new HashMap<>();
+    private final BitSet all = new BitSet();
+    private final BitSet completed = new BitSet();
+    private final BitSet[] byDifficulty = new BitSet[Task.Difficulty.values().length];
+    private final Map<String, BitSet> byTag = new TreeMap<>();
+
+    public TaskFacets() {
+        for (int i = 0; i < byDifficulty.length; i++) {
+            byDifficulty[i] = new BitSet();
+        }
+    }
+
+    public void add(Task task) {
+        if (slots.containsKey(task)) return;
+        int slot = tasksBySlot.size();
+        tasksBySlot.add(task);
+        slots.put(task, slot);
+        all.set(slot);
+        if (task.isCompleted()) completed.set(slot);
+        byDifficulty[task.getDifficulty().ordinal()].set(slot);
+        for (String tag : task.getTags()) {
+            byTag.computeIfAbsent(tag, t -> new BitSet()).set(slot);
+        }
+    }
+
+    public void remove(Task task) {
+        Integer slot = slots.remove(task);
+        if (slot == null) return;
+        tasksBySlot.set(slot, null);
+        all.clear(slot);
+        completed.clear(slot);
+        byDifficulty[task.getDifficulty().ordinal()].clear(slot);
+        for (String tag : task.getTags()) {
+            clearTag(tag, slot);
+        }
+    }
+
+    // Moves an indexed task's bits after it was completed or retagged; previousTags are the tags it had before
+    public void update(Task task, List<String> previousTags) {
+        Integer slot = slots.get(task);
+        if (slot == null) return;
+        completed.set(slot, task.isCompleted());
+        for (String tag : previousTags) {
+            clearTag(tag, slot);
+        }
+        for (String tag : task.getTags()) {
+            byTag.computeIfAbsent(tag, t -> new BitSet()).set(slot);
+        }
+    }
+
+    private void clearTag(String tag, int slot) {
+        BitSet tagged = byTag.get(tag);
+        if (tagged == null) return;
+        tagged.clear(slot);
+        if (tagged.isEmpty()) byTag.remove(tag);
+    }
+
+    // Every tag in use, sorted
+    public Set<String> getTags() {
+        return Collections.unmodifiableSet(byTag.keySet());
+    }
+
+    /**
+     * Number of tasks with the tag, difficulty and completion state given;
+     * null for any of them means "any".
+     */
+    public int count(String tag, Task.Difficulty difficulty, Boolean isCompleted) {
+        return select(tag, difficulty, isCompleted).cardinality();
+    }
+
+    // The tasks count() counts, in the order they were added
+    public List<Task> find(String tag, Task.Difficulty difficulty, Boolean isCompleted) {
+        BitSet selected = select(tag, difficulty, isCompleted);
+        List<Task> tasks = new ArrayList<>(selected.cardinality());
+        for (int slot = selected.nextSetBit(0); slot >= 0; slot = selected.nextSetBit(slot + 1)) {
+            tasks.add(tasksBySlot.get(slot));
+        }
+        return tasks;
+    }
+
+    // count() for every tag at once
+    public Map<String, Integer> countByTag(Task.Difficulty difficulty, Boolean isCompleted) {
+        BitSet filter = select(null, difficulty, isCompleted);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, BitSet> entry : byTag.entrySet()) {
+            BitSet tagged = (BitSet) entry.getValue().clone();
+            tagged.and(filter);
+            counts.put(entry.getKey(), tagged.cardinality());
+        }
+        return counts;
+    }
+
+    private BitSet select(String tag, Task.Difficulty difficulty, Boolean isCompleted) {
+        BitSet selected = (BitSet) all.clone();
+        if (tag != null) selected.and(byTag.getOrDefault(tag, new BitSet()));
+        if (difficulty != null) selected.and(byDifficulty[difficulty.ordinal()]);
+        if (isCompleted != null) {
+            if (isCompleted) {
+                selected.and(completed);
+            } else {
+                selected.andNot(completed);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Compares facet counts from the bitmaps with the same counts from a pass
+     * over the task list, as the analytics screen asks for them.
+     * Usage: java util.TaskFacets [tasks]
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        SampleHistory history = new SampleHistory();
+        String[] subjects = SampleHistory.tags();
+        List<Task> tasks = history.tasks(count);
+        for (Task task : tasks) {
+            task.setTags(List.of(history.tag()));
+        }
+
+        long start = System.nanoTime();
+        TaskFacets facets = new TaskFacets();
+        for (Task task : tasks) {
+            facets.add(task);
+        }
+        System.out.printf("Indexed %d tasks in %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+
+        // One screen's worth: every tag x difficulty x completion cell
+        long checksum = 0;
+        for (int round = 0; round < 50; round++) {
+            checksum += screen(facets, tasks, subjects, true) + screen(facets, tasks, subjects, false) + onePass(tasks, subjects);
+        }
+        long scanNanos = 0;
+        long facetNanos = 0;
+        int rounds = 20;
+        for (int round = 0; round < rounds; round++) {
+            long t = System.nanoTime();
+            long scanned = screen(facets, tasks, subjects, false);
+            scanNanos += System.nanoTime() - t;
+            t = System.nanoTime();
+            long counted = screen(facets, tasks, subjects, true);
+            facetNanos += System.nanoTime() - t;
+            if (scanned != counted) throw new IllegalStateException("Bitmap counts differ from the scan");
+        }
+        // The best a scan can do: one pass filling every cell
+        long onePassNanos = 0;
+        for (int round = 0; round < rounds; round++) {
+            long t = System.nanoTime();
+            checksum += onePass(tasks, subjects);
+            onePassNanos += System.nanoTime() - t;
+        }
+        int cells = subjects.length * Task.Difficulty.values().length * 2;
+        System.out.printf("%d facet counts: scan per count %.1f µs, one pass %.1f µs, bitmaps %.1f µs (checksum %d)%n", cells,
+                scanNanos / 1e3 / rounds, onePassNanos / 1e3 / rounds, facetNanos / 1e3 / rounds, checksum);
+    }
+
+    private static long onePass(List<Task> tasks, String[] subjects) {
+        long[] cells = new long[subjects.length * 6];
+        for (Task task : tasks) {
+            for (int s = 0; s < subjects.length; s++) {
+                if (task.hasTag(subjects[s])) cells[s * 6 + task.getDifficulty().ordinal() * 2 + (task.isCompleted() ? 0 : 1)]++;
+            }
+        }
+        long total = 0;
+        for (long cell : cells) {
+            total += cell;
+        }
+        return total;
+    }
+
+    private static long screen(TaskFacets facets, List<Task> tasks, String[] subjects, boolean useBitmaps) {
+        long total = 0;
+        for (String subject : subjects) {
+            for (Task.Difficulty difficulty : Task.Difficulty.values()) {
+                for (boolean done : new boolean[]{true, false}) {
+                    if (useBitmaps) {
+                        total += facets.count(subject, difficulty, done);
+                    } else {
+                        for (Task task : tasks) {
+                            if (task.hasTag(subject) && task.getDifficulty() == difficulty && task.isCompleted() == done) total++;
+                        }
+                    }
+                }
+            }
+        }
+        return total;
+    }
+}
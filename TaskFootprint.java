@@ -0,0 +1,129 @@
+//util->TaskFootprint
+package util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.reflect.TypeToken;
+import models.DescriptionPool;
+import models.Task;
+import models.TaskIdIndex;
+
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap a loaded task history takes, for Task against the field
+ * layout it had before it was packed, and checks the saved JSON is unchanged.
+ * Task shares descriptions through DescriptionPool, so the old layout is measured
+ * both as loaded and with its descriptions shared the same way; packing is judged
+ * against the latter, sharing against the former.
+ * Also measures the ID lookup User keeps over the tasks. Keyed by getId(), a
+ * packed task makes a new ID string per entry; TaskIdIndex keys on the packed ID.
+ * Fails if packing or TaskIdIndex no longer save at least MIN_PACKING_GAIN and
+ * MIN_INDEX_GAIN.
+ * Run with -Ddescriptions.pool=0 to see the cost without shared descriptions.
+ * Usage: java util.TaskFootprint [tasks]
+ */
+public class TaskFootprint {
+    private static final double MIN_PACKING_GAIN = 1.4;
+    private static final double MIN_INDEX_GAIN = 4;
+
+    // Task's fields before packing: an ID string, an enum reference, a boolean and a LocalDate
+    @SuppressWarnings("unused")
+    private static class UnpackedTask {
+        String id;
+        String description;
+        int xpReward;
+        int coinReward;
+        Task.Difficulty difficulty;
+        boolean completed;
+        LocalDate completionDate;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        List<Task> history = new SampleHistory().tasks(count);
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, (JsonSerializer<LocalDate>) (date, type, context) -> new JsonPrimitive(date.toString()))
+                .registerTypeAdapter(LocalDate.class, (JsonDeserializer<LocalDate>) (json, type, context) -> LocalDate.parse(json.getAsString()))
+                .create();
+        String json = gson.toJson(history);
+        history = null;
+
+        long unpacked = retained(() -> gson.fromJson(json, new TypeToken<List<UnpackedTask>>() {}.getType()));
+        long unpackedShared = retained(() -> {
+            List<UnpackedTask> tasks = gson.fromJson(json, new TypeToken<List<UnpackedTask>>() {}.getType());
+            for (UnpackedTask task : tasks) {
+                task.description = DescriptionPool.intern(task.description);
+            }
+            return tasks;
+        });
+        long packed = retained(() -> gson.fromJson(json, new TypeToken<List<Task>>() {}.getType()));
+
+        List<Task> loaded = gson.fromJson(json, new TypeToken<List<Task>>() {}.getType());
+        if (!gson.toJson(loaded).equals(json)) throw new IllegalStateException("Tasks don't round-trip to the same JSON");
+
+        long stringKeys = retained(() -> {
+            Map<String, Task> byId = new HashMap<>();
+            for (Task task : loaded) {
+                byId.put(task.getId(), task);
+            }
+            return byId;
+        });
+        long packedKeys = retained(() -> {
+            TaskIdIndex byId = new TaskIdIndex();
+            for (Task task : loaded) {
+                byId.put(task);
+            }
+            return byId;
+        });
+
+        double packingGain = (double) unpackedShared / packed;
+        double indexGain = (double) stringKeys / packedKeys;
+        System.out.printf("%-26s %12s %10s%n", "layout", "heap bytes", "per task");
+        System.out.printf("%-26s %12d %10.1f%n", "unpacked (before)", unpacked, (double) unpacked / count);
+        System.out.printf("%-26s %12d %10.1f%n", "unpacked, shared strings", unpackedShared, (double) unpackedShared / count);
+        System.out.printf("%-26s %12d %10.1f%n", "packed, shared strings", packed, (double) packed / count);
+        System.out.printf("Sharing descriptions: %.1fx smaller; packing on top of that: %.1fx smaller; both: %.1fx%n",
+                (double) unpacked / unpackedShared, packingGain, (double) unpacked / packed);
+        System.out.printf("%-26s %12d %10.1f%n", "getId() map", stringKeys, (double) stringKeys / count);
+        System.out.printf("%-26s %12d %10.1f%n", "TaskIdIndex", packedKeys, (double) packedKeys / count);
+        System.out.printf("Packed task plus ID lookup: %.1f bytes per task with a getId() map, %.1f with TaskIdIndex%n",
+                (double) (packed + stringKeys) / count, (double) (packed + packedKeys) / count);
+        System.out.println("Description pool: " + DescriptionPool.getStats());
+
+        if (packingGain < MIN_PACKING_GAIN) {
+            throw new IllegalStateException(String.format("Packing saves only %.2fx, expected at least %.1fx",
+                    packingGain, MIN_PACKING_GAIN));
+        }
+        if (indexGain < MIN_INDEX_GAIN) {
+            throw new IllegalStateException(String.format("TaskIdIndex saves only %.2fx over a getId() map, expected at least %.1fx",
+                    indexGain, MIN_INDEX_GAIN));
+        }
+    }
+
+    // Heap still in use while the built object is reachable, less what was in use before
+    private static long retained(Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object kept = build.get();
+        long after = usedAfterGc();
+        Reference.reachabilityFence(kept);
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
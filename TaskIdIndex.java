@@ -0,0 +1,87 @@
+package models;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Tasks by ID for User.findTaskById, keyed by the two halves of the UUID that
+// Task already stores. A HashMap keyed by getId() would hold a 36-character
+// String and a map entry for every task, more than the packed task itself.
+// This is one open-addressing table of task references; the rare ID that isn't
+// a UUID goes in a small map instead. Not thread-safe.
+public class TaskIdIndex {
+    private Task[] table = new Task[16]; // Linear probing; length is a power of two
+    private int tableSize;
+    private Map<String, Task> otherIds; // Only for IDs that aren't in UUID form
+
+    public int size() {
+        return tableSize + (otherIds == null ? 0 : otherIds.size());
+    }
+
+    // Replaces a task with the same ID
+    public void put(Task task) {
+        String otherId = task.getOtherId();
+        if (otherId != null) {
+            if (otherIds == null) otherIds = new HashMap<>();
+            otherIds.put(otherId, task);
+            return;
+        }
+        if ((tableSize + 1) * 4 > table.length * 3) resize(table.length * 2);
+        int slot = find(task.getIdHigh(), task.getIdLow());
+        if (table[slot] == null) tableSize++;
+        table[slot] = task;
+    }
+
+    public Task get(String id) {
+        UUID uuid = Task.canonicalUuid(id);
+        if (uuid == null) return otherIds == null ? null : otherIds.get(id);
+        return table[find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())];
+    }
+
+    // Removes the task stored under this task's ID, if it is this task
+    public void remove(Task task) {
+        String otherId = task.getOtherId();
+        if (otherId != null) {
+            if (otherIds != null) otherIds.remove(otherId, task);
+            return;
+        }
+        int slot = find(task.getIdHigh(), task.getIdLow());
+        if (table[slot] != task) return;
+        table[slot] = null;
+        tableSize--;
+        // Move later tasks of the same run back, so lookups never stop early at the gap
+        int mask = table.length - 1;
+        for (int next = (slot + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+            int home = home(table[next].getIdHigh(), table[next].getIdLow());
+            // Only a task whose home slot is not cyclically within (slot, next] can fill the gap
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                table[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    // The slot holding the ID, or the empty slot where it would go
+    private int find(long high, long low) {
+        int mask = table.length - 1;
+        int slot = home(high, low);
+        while (table[slot] != null && !(table[slot].getIdHigh() == high && table[slot].getIdLow() == low)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(long high, long low) {
+        long mixed = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (table.length - 1);
+    }
+
+    private void resize(int capacity) {
+        Task[] old = table;
+        table = new Task[capacity];
+        for (Task task : old) {
+            if (task != null) table[find(task.getIdHigh(), task.getIdLow())] = task;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Checks TaskIdIndex against a HashMap keyed by getId() over a long run of random
+ * puts, removes and lookups. IDs come from a small set, so the table keeps filling,
+ * resizing and closing gaps after removals; a few are not in UUID form and go
+ * through the fallback map. Exits with an error on the first disagreement.
+ * Usage: java models.TaskIdIndexTest [operations]
+ */
+public class TaskIdIndexTest {
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        Random random = new Random(7);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        for (int i = 0; i < 50; i++) {
+            ids.add("legacy-" + i);                                    // Saved before IDs were UUIDs
+            ids.add(UUID.randomUUID().toString().toUpperCase());       // A UUID, but not written the canonical way
+        }
+
+        TaskIdIndex index = new TaskIdIndex();
+        Map<String, Task> expected = new HashMap<>();
+        List<Task> seen = new ArrayList<>(); // Includes tasks since replaced, to remove stale ones too
+        for (int op = 0; op < operations; op++) {
+            int choice = random.nextInt(10);
+            if (choice < 4 || seen.isEmpty()) {
+                Task task = new Task("Task " + op, 10, 5, Task.Difficulty.EASY);
+                task.setId(ids.get(random.nextInt(ids.size())));
+                index.put(task);
+                expected.put(task.getId(), task);
+                seen.add(task);
+            } else if (choice < 7) {
+                Task task = seen.get(random.nextInt(seen.size()));
+                index.remove(task);
+                expected.remove(task.getId(), task);
+            } else {
+                String id = ids.get(random.nextInt(ids.size()));
+                check(index.get(id) == expected.get(id), "lookup of " + id + " disagrees after " + op + " operations");
+            }
+            check(index.size() == expected.size(), "size " + index.size() + " instead of " + expected.size()
+                    + " after " + op + " operations");
+            if (seen.size() > 10_000) seen.subList(0, 5_000).clear();
+        }
+        for (String id : ids) {
+            check(index.get(id) == expected.get(id), "final lookup of " + id + " disagrees");
+        }
+        System.out.println("✅ " + operations + " operations agree with a HashMap, " + expected.size() + " tasks left");
+    }
+
+    private static void check(boolean condition, String failure) {
+        if (!condition) throw new AssertionError(failure);
+    }
+}
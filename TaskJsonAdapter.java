@@ -0,0 +1,107 @@
+package models;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads and writes Task in the JSON form it had when its fields were stored as-is,
+// so saved accounts and patches don't change with the packed layout
+class TaskJsonAdapter extends TypeAdapter<Task> {
+    @Override
+    public void write(JsonWriter out, Task task) throws IOException {
+        if (task == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(task.getId());
+        if (task.getDescription() != null) out.name("description").value(task.getDescription());
+        out.name("xpReward").value(task.getXpReward());
+        out.name("coinReward").value(task.getCoinReward());
+        out.name("difficulty").value(task.getDifficulty().name());
+        out.name("completed").value(task.isCompleted());
+        LocalDate completionDate = task.getCompletionDate();
+        if (completionDate != null) out.name("completionDate").value(completionDate.toString());
+        // Only tagged tasks carry the field, so untagged ones are stored exactly as before tags existed
+        List<String> tags = task.getTags();
+        if (!tags.isEmpty()) {
+            out.name("tags").beginArray();
+            for (String tag : tags) {
+                out.value(tag);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Task read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String id = null;
+        String description = "";
+        int xp = 0;
+        int coins = 0;
+        Task.Difficulty difficulty = Task.Difficulty.EASY;
+        boolean completed = false;
+        LocalDate completionDate = null;
+        List<String> tags = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                if (name.equals("description")) description = null;
+                continue;
+            }
+            switch (name) {
+                case "id" -> id = in.nextString();
+                case "description" -> description = in.nextString();
+                case "xpReward" -> xp = in.nextInt();
+                case "coinReward" -> coins = in.nextInt();
+                case "difficulty" -> difficulty = parseDifficulty(in.nextString());
+                case "completed" -> completed = in.nextBoolean();
+                case "completionDate" -> completionDate = LocalDate.parse(in.nextString());
+                case "tags" -> {
+                    tags = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            tags.add(in.nextString());
+                        }
+                    }
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Task task = new Task(description, xp, coins, Task.packState(difficulty, completed));
+        if (id != null) task.setId(id);
+        task.setCompletionDate(completionDate);
+        if (tags != null) task.initTags(tags);
+        // A task saved before IDs existed gets one now and counts as changed until it is saved with it
+        task.setChanged(id == null);
+        return task;
+    }
+
+    // Any case; a name this version doesn't know (say, from a newer app) reads as EASY rather than failing the account
+    private static Task.Difficulty parseDifficulty(String name) {
+        for (Task.Difficulty difficulty : Task.Difficulty.values()) {
+            if (difficulty.name().equalsIgnoreCase(name)) return difficulty;
+        }
+        return Task.Difficulty.EASY;
+    }
+}
@@ -0,0 +1,189 @@
+//util->TaskSearchIndex
+package util;
+
+import models.Task;
+
+import java.util.*;
+
+/**
+ * Word index over task descriptions, for filtering as the user types.
+ * A query matches a task when every query word is the start of some word in its
+ * description, case-insensitively ("rev bio" finds "Review notes for Biology").
+ *
+ * Each task gets a slot number in the order it was added, and each word keeps
+ * the sorted slots of the tasks using it. Words are kept sorted, so the words
+ * with a given prefix are one range of the map; a query ORs their slots into a
+ * bitmap per query word and ANDs those together, never looking at a description.
+ *
+ * Tasks are added and removed one at a time as the list changes; User keeps
+ * one per account alongside its other task lookups. Not thread-safe.
+ */
+public class TaskSearchIndex {
+    private final TreeMap<String, Postings> tasksByWord = new TreeMap<>();
+    private final List<Task> tasksBySlot = new ArrayList<>(); // null where a task was removed
+    private final Map<Task, Integer> slots = new HashMap<>();
+
+    // Slots of the tasks using one word, ascending since slots only grow
+    private static class Postings {
+        int[] slots = new int[2];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            int i = Arrays.binarySearch(slots, 0, size, slot);
+            if (i < 0) return;
+            System.arraycopy(slots, i + 1, slots, i, size - i - 1);
+            size--;
+        }
+    }
+
+    public void add(Task task) {
+        if (slots.containsKey(task)) return;
+        int slot = tasksBySlot.size();
+        tasksBySlot.add(task);
+        slots.put(task, slot);
+        for (String word : tokenize(task.getDescription())) {
+            tasksByWord.computeIfAbsent(word, w -> new Postings()).add(slot);
+        }
+    }
+
+    public void remove(Task task) {
+        Integer slot = slots.remove(task);
+        if (slot == null) return;
+        tasksBySlot.set(slot, null);
+        for (String word : tokenize(task.getDescription())) {
+            Postings postings = tasksByWord.get(word);
+            if (postings == null) continue;
+            postings.remove(slot);
+            if (postings.size == 0) tasksByWord.remove(word);
+        }
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    // Tasks matching every word of the query, in the order they were added; a query without words matches every task
+    public List<Task> search(String query) {
+        List<String> terms = tokenize(query);
+        long[] matches = new long[(tasksBySlot.size() + 63) >>> 6];
+        if (terms.isEmpty()) {
+            Arrays.fill(matches, -1L);
+        } else {
+            // Longest word first: it usually matches fewest tasks, so the result is small early
+            terms.sort(Comparator.comparingInt(String::length).reversed());
+            long[] termMatches = terms.size() > 1 ? new long[matches.length] : null;
+            for (int t = 0; t < terms.size(); t++) {
+                long[] bits = t == 0 ? matches : termMatches;
+                if (t > 0) Arrays.fill(bits, 0);
+                String term = terms.get(t);
+                for (Postings postings : tasksByWord.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                    for (int i = 0; i < postings.size; i++) {
+                        int slot = postings.slots[i];
+                        bits[slot >>> 6] |= 1L << slot;
+                    }
+                }
+                if (t > 0) {
+                    boolean any = false;
+                    for (int w = 0; w < matches.length; w++) {
+                        matches[w] &= bits[w];
+                        any |= matches[w] != 0;
+                    }
+                    if (!any) break;
+                }
+            }
+        }
+
+        List<Task> result = new ArrayList<>();
+        for (int w = 0; w < matches.length; w++) {
+            for (long word = matches[w]; word != 0; word &= word - 1) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                Task task = slot < tasksBySlot.size() ? tasksBySlot.get(slot) : null;
+                if (task != null) result.add(task);
+            }
+        }
+        return result;
+    }
+
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) words.add(word);
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Compares filtering by the index with a String.contains scan, one query per
+     * keystroke as if typed into the filter box.
+     * Usage: java util.TaskSearchIndex [tasks]
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        List<Task> tasks = new SampleHistory().tasks(count);
+        TaskSearchIndex index = new TaskSearchIndex();
+        long start = System.nanoTime();
+        for (Task task : tasks) {
+            index.add(task);
+        }
+        System.out.printf("Indexed %d tasks in %.1f ms%n", count, (System.nanoTime() - start) / 1e6);
+
+        String[] typed = {"chem", "worksheet chem", "flash", "programming 12", "review hist"};
+        System.out.printf("%-16s %8s %12s %12s%n", "query", "matches", "scan µs", "index µs");
+        for (String query : typed) {
+            for (int warmUp = 0; warmUp < 200; warmUp++) {
+                scan(tasks, query);
+                index.search(query);
+            }
+            long scanNanos = 0;
+            long indexNanos = 0;
+            int matches = 0;
+            // Every prefix of the query, as the filter box sees it while typing
+            for (int length = 1; length <= query.length(); length++) {
+                String keystroke = query.substring(0, length);
+                long t = System.nanoTime();
+                List<Task> scanned = scan(tasks, keystroke);
+                scanNanos += System.nanoTime() - t;
+                t = System.nanoTime();
+                List<Task> found = index.search(keystroke);
+                indexNanos += System.nanoTime() - t;
+                if (found.size() > scanned.size()) throw new IllegalStateException("Index found more than the scan");
+                matches = found.size();
+            }
+            System.out.printf("%-16s %8d %12.1f %12.1f%n", query, matches,
+                    scanNanos / 1e3 / query.length(), indexNanos / 1e3 / query.length());
+        }
+    }
+
+    // What the screens would otherwise do per keystroke
+    private static List<Task> scan(List<Task> tasks, String query) {
+        List<Task> result = new ArrayList<>();
+        String[] terms = query.toLowerCase(Locale.ROOT).split("\\s+");
+        for (Task task : tasks) {
+            String description = task.getDescription().toLowerCase(Locale.ROOT);
+            boolean all = true;
+            for (String term : terms) {
+                if (!description.contains(term)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) result.add(task);
+        }
+        return result;
+    }
+}
@@ -2,6 +2,7 @@
 package util;
 
 import models.Task;
+import models.User;
 import java.util.*;
 
 public class TaskSelector {
@@ -117,6 +118,42 @@ public class TaskSelector {
         return prioritizedTasks;
     }
 
+    /**
+     * Same order as prioritizeTasks, using the account's facet indexes: pending tasks
+     * come straight from the completion bitmap, and among tasks worth the same, those
+     * in the subject with the fewest completed tasks come first, to keep subjects balanced.
+     * Untagged tasks come after tagged ones worth the same, in list order.
+     * @param user Account whose tasks to prioritize
+     * @return Pending tasks sorted by priority (highest priority first)
+     */
+    public static List<Task> prioritizeTasks(User user) {
+        TaskFacets facets = user.getTaskFacets();
+        List<Task> pending = facets.find(null, null, false);
+        Map<String, Integer> completedByTag = facets.countByTag(null, true);
+
+        List<TaskPriority> taskPriorities = new ArrayList<>();
+        for (Task task : pending) {
+            taskPriorities.add(new TaskPriority(task, task.getXpReward() + task.getCoinReward()));
+        }
+        Comparator<TaskPriority> byReward = (a, b) -> Integer.compare(b.priority, a.priority);
+        taskPriorities.sort(byReward.thenComparingInt(tp -> leastPractised(tp.task, completedByTag)));
+
+        List<Task> prioritizedTasks = new ArrayList<>();
+        for (TaskPriority tp : taskPriorities) {
+            prioritizedTasks.add(tp.task);
+        }
+        return prioritizedTasks;
+    }
+
+    // Completed tasks in the task's least practised subject; untagged tasks sort after tagged ones
+    private static int leastPractised(Task task, Map<String, Integer> completedByTag) {
+        int least = Integer.MAX_VALUE;
+        for (String tag : task.getTags()) {
+            least = Math.min(least, completedByTag.getOrDefault(tag, 0));
+        }
+        return least;
+    }
+
     // Helper class to store task with its priority
     private static class TaskPriority {
         Task task;
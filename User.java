@@ -1,14 +1,45 @@
 package models;
 
+import util.TaskFacets;
+import util.TaskSearchIndex;
+import util.XpCurve;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class User {
     private String username;
+    // Bumped on every save, to notice saves from another app instance. Declared ahead of
+    // the tasks so it is near the start of the saved JSON, where readHeader finds it quickly
+    private long version;
     private int xp;
     private int level;
     private int coins;
     private ArrayList<Task> tasks = new ArrayList<>();
     private int totalCompletedTasks = 0; // Track total completed tasks, even if deleted later
+    private ArrayList<String> groups = new ArrayList<>(); // Classes and study groups with their own leaderboard
+    private XpBuckets recentXp = new XpBuckets(); // XP gained per day, for the daily/weekly/monthly boards
+
+    // Lookup indexes over tasks, rebuilt lazily after loading (not saved to JSON)
+    private transient TaskIdIndex tasksById;
+    private transient Map<String, List<Task>> tasksByDescription;
+    private transient TaskSearchIndex taskSearch;
+    private transient TaskFacets taskFacets;
+
+    // Leaderboard group of the online session this copy of the account is playing in; never saved
+    private transient String sessionGroup;
+
+    // What changed since the account was loaded or saved, so a save can write just that (not saved to JSON).
+    // Changed tasks carry their own flag. Until the first load or save, or after the list is cleared,
+    // there is nothing for the changes to apply to, so only a full save is safe.
+    private transient Set<String> changedFields;
+    private transient Set<String> removedTaskIds;
+    private transient boolean matchesStored;
 
     public User(String username) {
         this.username = username;
@@ -34,27 +65,226 @@ public class User {
         return coins;
     }
 
-    public ArrayList<Task> getTasks() {
-        return tasks;
+    // Read-only: changes go through addTask and removeTask, which keep the indexes current
+    public List<Task> getTasks() {
+        return Collections.unmodifiableList(tasks);
     }
 
     public int getTotalCompletedTasks() {
         return totalCompletedTasks;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<String> getGroups() {
+        if (groups == null) groups = new ArrayList<>(); // Missing in accounts saved before groups existed
+        return groups;
+    }
+
+    public XpBuckets getRecentXp() {
+        if (recentXp == null) recentXp = new XpBuckets(); // Missing in accounts saved before time-windowed boards
+        return recentXp;
+    }
+
+    // Returns false if the user was already a member
+    public boolean joinGroup(String group) {
+        if (getGroups().contains(group)) return false;
+        groups.add(group);
+        markChanged("groups");
+        return true;
+    }
+
+    public boolean leaveGroup(String group) {
+        boolean removed = getGroups().remove(group);
+        if (removed) markChanged("groups");
+        return removed;
+    }
+
+    // Ranks this copy in the session's group too, without adding the group to the saved account
+    public void setSessionGroup(String group) {
+        this.sessionGroup = group;
+    }
+
+    // Every group whose leaderboard this account is submitted to: its own and the current session's
+    public List<String> getLeaderboardGroups() {
+        if (sessionGroup == null || getGroups().contains(sessionGroup)) return getGroups();
+        List<String> all = new ArrayList<>(groups);
+        all.add(sessionGroup);
+        return all;
+    }
+
+    // Task list changes go through these so the lookup indexes and the change set stay in sync
+    public void addTask(Task task) {
+        ensureTaskIndex();
+        tasks.add(task);
+        indexTask(task);
+        task.setChanged(true);
+    }
+
+    public boolean removeTask(Task task) {
+        boolean removed = tasks.remove(task);
+        if (removed) {
+            removedTaskIds().add(task.getId());
+        }
+        if (removed && tasksById != null) {
+            if (task.getOwner() == this) task.setOwner(null);
+            tasksById.remove(task);
+            if (taskSearch != null) taskSearch.remove(task);
+            if (taskFacets != null) taskFacets.remove(task);
+            List<Task> sameDescription = tasksByDescription.get(task.getDescription());
+            if (sameDescription != null) {
+                sameDescription.remove(task);
+                if (sameDescription.isEmpty()) {
+                    tasksByDescription.remove(task.getDescription());
+                }
+            }
+        }
+        return removed;
+    }
+
+    public void clearTasks() {
+        for (Task task : tasks) {
+            if (task.getOwner() == this) task.setOwner(null);
+        }
+        tasks.clear();
+        tasksById = null;
+        tasksByDescription = null;
+        taskSearch = null;
+        taskFacets = null;
+        matchesStored = false;
+    }
+
+    // Fields changed since the last load or save, by their JSON name
+    public Set<String> getChangedFields() {
+        if (changedFields == null) changedFields = new LinkedHashSet<>();
+        return changedFields;
+    }
+
+    public List<Task> getChangedTasks() {
+        List<Task> changed = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task.isChanged()) changed.add(task);
+        }
+        return changed;
+    }
+
+    public Set<String> getRemovedTaskIds() {
+        return removedTaskIds();
+    }
+
+    // True if only a full save can capture the changes (new or upgraded account, or the task list was cleared)
+    public boolean needsFullSave() {
+        return !matchesStored;
+    }
+
+    // Called once the account matches what is stored
+    public void markSaved() {
+        getChangedFields().clear();
+        removedTaskIds().clear();
+        for (Task task : tasks) {
+            task.setChanged(false);
+        }
+        matchesStored = true;
+    }
+
+    private Set<String> removedTaskIds() {
+        if (removedTaskIds == null) removedTaskIds = new LinkedHashSet<>();
+        return removedTaskIds;
+    }
+
+    private void markChanged(String field) {
+        getChangedFields().add(field);
+    }
+
+    public Task findTaskById(String id) {
+        ensureTaskIndex();
+        return tasksById.get(id);
+    }
+
+    // All tasks with the given description, in list order
+    public List<Task> findTasksByDescription(String description) {
+        ensureTaskIndex();
+        return tasksByDescription.getOrDefault(description, List.of());
+    }
+
+    // Tasks whose description has words starting with each word of the query, in list order
+    public List<Task> searchTasks(String query) {
+        ensureTaskIndex();
+        // Built on the first search only, since most loads of an account never search it
+        if (taskSearch == null) {
+            taskSearch = new TaskSearchIndex();
+            for (Task task : tasks) {
+                taskSearch.add(task);
+            }
+        }
+        return taskSearch.search(query);
+    }
+
+    // Tag, difficulty and completion bitmaps, for counts without a pass over the tasks
+    public TaskFacets getTaskFacets() {
+        ensureTaskIndex();
+        // Like the search index, built when first asked for; completing or retagging a task updates it in place
+        if (taskFacets == null) {
+            taskFacets = new TaskFacets();
+            for (Task task : tasks) {
+                taskFacets.add(task);
+            }
+        }
+        return taskFacets;
+    }
+
+    private void ensureTaskIndex() {
+        if (tasksById != null) return;
+        tasksById = new TaskIdIndex();
+        tasksByDescription = new HashMap<>();
+        taskSearch = null;
+        taskFacets = null;
+        for (Task task : tasks) {
+            indexTask(task);
+        }
+    }
+
+    private void indexTask(Task task) {
+        task.setOwner(this);
+        tasksById.put(task);
+        tasksByDescription.computeIfAbsent(task.getDescription(), d -> new ArrayList<>()).add(task);
+        if (taskSearch != null) taskSearch.add(task);
+        if (taskFacets != null) taskFacets.add(task);
+    }
+
+    // Called by one of this account's tasks after its completion or tags changed
+    void taskFacetsChanged(Task task, List<String> previousTags) {
+        if (taskFacets != null) taskFacets.update(task, previousTags);
+    }
+
     // Add XP and handle leveling up
+    // Resolves the new level with one lookup in the XP curve, so bulk grants don't loop per level
     public void addXP(int amount) {
-        xp += amount;
-        while (xp >= xpNeeded(level)) {
-            xp -= xpNeeded(level);
-            level++;
-            coins += 50; // bonus on level-up
+        getRecentXp().add(LeaderboardWindow.currentDay(), amount);
+        int oldLevel = level;
+        long totalXp = XpCurve.totalXpForLevel(level) + xp + amount;
+        // XP grants never take a level away
+        level = Math.max(oldLevel, XpCurve.levelForTotalXp(totalXp));
+        xp = (int) Math.min(Integer.MAX_VALUE, totalXp - XpCurve.totalXpForLevel(level));
+        coins += 50 * (level - oldLevel); // bonus on level-up
+        markChanged("recentXp");
+        markChanged("xp");
+        if (level != oldLevel) {
+            markChanged("level");
+            markChanged("coins");
         }
     }
 
     public boolean spendCoins(int amount) {
         if (coins >= amount) {
             coins -= amount;
+            markChanged("coins");
             return true;
         } else {
             return false;
@@ -64,24 +294,28 @@ public class User {
     // Add coins safely
     public void addCoins(int amount) {
         coins += amount;
+        markChanged("coins");
     }
 
     // XP required for next level
-    public int xpNeeded(int level) {
-        return 100 * (int) Math.pow(1.5, level - 1);
+    public long xpNeeded(int level) {
+        return XpCurve.xpNeeded(level);
     }
 
     // Setter methods for synchronization
     public void setXp(int xp) {
         this.xp = xp;
+        markChanged("xp");
     }
 
     public void setLevel(int level) {
         this.level = level;
+        markChanged("level");
     }
 
     public void setCoins(int coins) {
         this.coins = coins;
+        markChanged("coins");
     }
 
     // Initial state tracking for multiplayer mode
@@ -95,11 +329,16 @@ public class User {
         this.initialLevel = this.level;
         this.initialCoins = this.coins;
         this.trackingInitialized = true;
+        markChanged("initialXp");
+        markChanged("initialLevel");
+        markChanged("initialCoins");
+        markChanged("trackingInitialized");
         System.out.println("Initialized tracking for " + username + ": XP=" + initialXp + ", Coins=" + initialCoins);
     }
 
     public void resetTracking() {
         this.trackingInitialized = false;
+        markChanged("trackingInitialized");
     }
 
     public int getInitialXp() {
@@ -130,5 +369,14 @@ public class User {
     // Method to increment the total completed tasks counter
     public void incrementCompletedTasksCounter() {
         totalCompletedTasks++;
+        markChanged("totalCompletedTasks");
+    }
+
+    // Add several completed tasks to the counter at once (e.g. when merging a multiplayer session)
+    public void incrementCompletedTasksCounter(int count) {
+        if (count > 0) {
+            totalCompletedTasks += count;
+            markChanged("totalCompletedTasks");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+//util->UserIndex
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of every account in the data directory (data/users.idx), one
+ * "<shard>\t<username>" line per account. Signing up appends one line, so its
+ * cost doesn't depend on how many accounts exist, and other instances pick up
+ * new accounts by reading only what was appended since they last looked.
+ *
+ * Accounts are spread over SHARDS sub-directories and credential files by a
+ * hash of the username; shardOf is the one place that decides which.
+ * Appends must happen under the DataDirectoryLock.
+ */
+public class UserIndex {
+    public static final int SHARDS = 64;
+    public static final String INDEX_FILE = "users.idx";
+
+    private final File file;
+    private final boolean sync;
+    private final Map<String, Integer> shards = new ConcurrentHashMap<>();
+    private long loadedLength; // Bytes of complete lines already read
+
+    public UserIndex(File dir, boolean sync) throws IOException {
+        this.file = new File(dir, INDEX_FILE);
+        this.sync = sync;
+        refresh();
+    }
+
+    // String.hashCode is specified, so every instance and version agrees on the shard
+    public static int shardOf(String username) {
+        return Math.floorMod(username.hashCode(), SHARDS);
+    }
+
+    public static String shardName(int shard) {
+        return String.format("%02x", shard);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean contains(String username) {
+        return shards.containsKey(username);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public Set<String> getUsernames() {
+        return Collections.unmodifiableSet(shards.keySet());
+    }
+
+    // Reads lines appended (by any instance) since the last call; a half-written last line is left for later
+    public synchronized void refresh() throws IOException {
+        if (!file.exists()) return;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (in.size() < loadedLength) {
+                // Rewritten (e.g. by a migration), start over
+                shards.clear();
+                loadedLength = 0;
+            }
+            long length = in.size() - loadedLength;
+            if (length <= 0) return;
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, loadedLength + buffer.position()) < 0) break;
+            }
+            parse(buffer.array(), buffer.position());
+        }
+    }
+
+    private void parse(byte[] bytes, int length) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != '\n') continue;
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                try {
+                    shards.put(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab), 16));
+                } catch (NumberFormatException e) {
+                    System.out.println("⚠️ Skipping a damaged line in " + file.getName());
+                }
+            }
+            start = i + 1;
+        }
+        loadedLength += start;
+    }
+
+    /**
+     * Adds the account if it isn't indexed yet. Call under the DataDirectoryLock.
+     * Leftovers of an append cut short by a crash are dropped first.
+     */
+    public synchronized void add(String username) throws IOException {
+        refresh();
+        if (shards.containsKey(username)) return;
+
+        byte[] line = format(Collections.singleton(username));
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.truncate(loadedLength);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            long position = loadedLength;
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+            if (sync) out.force(false);
+        }
+        shards.put(username, shardOf(username));
+        loadedLength += line.length;
+    }
+
+    // The index file content for the given accounts, for writing a whole new index
+    public static byte[] format(Collection<String> usernames) {
+        StringBuilder text = new StringBuilder(usernames.size() * 16);
+        for (String username : usernames) {
+            text.append(shardName(shardOf(username))).append('\t').append(username).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+//util->UserSchema
+package util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Versions of the account document format and the steps between them.
+ * Accounts are stored in an envelope, {"schema": n, "user": {...}}; files from
+ * before the envelope are schema 1. An older document is upgraded in memory when
+ * it is read, one registered step at a time, and written in the current schema
+ * the next time the account is saved, so changing the format never needs a
+ * bulk conversion (DataManager.migrateAllAccounts can still do one in the background).
+ *
+ * To change the format, bump CURRENT and register a step from the previous version.
+ */
+public class UserSchema {
+    public static final int CURRENT = 2;
+
+    // Version a step upgrades from -> the step, which returns the document one version newer
+    private static final Map<Integer, UnaryOperator<JsonObject>> steps = new ConcurrentHashMap<>();
+
+    static {
+        register(1, UserSchema::fillMissingFields);
+    }
+
+    public static void register(int fromVersion, UnaryOperator<JsonObject> step) {
+        steps.put(fromVersion, step);
+    }
+
+    public static int schemaOf(JsonObject stored) {
+        return stored.has("schema") && stored.has("user") ? stored.get("schema").getAsInt() : 1;
+    }
+
+    // The account inside a stored document, whatever its schema
+    public static JsonObject unwrap(JsonObject stored) {
+        return schemaOf(stored) == 1 ? stored : stored.getAsJsonObject("user");
+    }
+
+    public static JsonObject wrap(JsonElement user) {
+        JsonObject envelope = new JsonObject();
+        envelope.addProperty("schema", CURRENT);
+        envelope.add("user", user);
+        return envelope;
+    }
+
+    // Brings an account written in the given schema up to CURRENT
+    public static JsonObject upgrade(JsonObject user, int schema) throws IOException {
+        if (schema > CURRENT) {
+            throw new IOException("Account was saved by a newer version of the app (schema " + schema + ")");
+        }
+        for (int version = schema; version < CURRENT; version++) {
+            UnaryOperator<JsonObject> step = steps.get(version);
+            if (step == null) throw new IOException("No upgrade from account schema " + version);
+            user = step.apply(user);
+        }
+        return user;
+    }
+
+    /**
+     * 1 -> 2: fields added over time were left to Gson defaults and null checks in
+     * the getters. Fill them in explicitly: task IDs and difficulties, groups, the
+     * save counter, and the completed-task total (counted from the task list).
+     */
+    private static JsonObject fillMissingFields(JsonObject user) {
+        JsonArray tasks = user.has("tasks") ? user.getAsJsonArray("tasks") : new JsonArray();
+        int completed = 0;
+        for (JsonElement element : tasks) {
+            JsonObject task = element.getAsJsonObject();
+            if (!task.has("id")) task.addProperty("id", UUID.randomUUID().toString());
+            if (!task.has("difficulty")) task.addProperty("difficulty", "EASY");
+            if (task.has("completed") && task.get("completed").getAsBoolean()) completed++;
+        }
+        user.add("tasks", tasks);
+        if (!user.has("totalCompletedTasks")) user.addProperty("totalCompletedTasks", completed);
+        if (!user.has("groups")) user.add("groups", new JsonArray());
+        if (!user.has("version")) user.addProperty("version", 0);
+        return user;
+    }
+}
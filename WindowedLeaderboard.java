@@ -0,0 +1,151 @@
+//util->WindowedLeaderboard
+package util;
+
+import models.LeaderboardEntry;
+import models.LeaderboardWindow;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Daily, weekly and monthly leaderboards ranked by XP gained inside each window.
+ * Each user reports a running XP total per day. Every window keeps a RankedIndex
+ * of per-user sums that is adjusted by the change in a day's total, so an update
+ * costs O(log n) per window. When the day rolls over, only the users who gained
+ * XP on the day leaving each window are adjusted; nothing is re-aggregated.
+ *
+ * Entries on a window board carry the XP gained in that window in their xp field.
+ */
+public class WindowedLeaderboard {
+
+    // Most XP gained first, ties broken by username
+    public static final Comparator<LeaderboardEntry> BY_WINDOW_XP =
+            Comparator.comparingInt(LeaderboardEntry::getXp).reversed()
+                    .thenComparing(LeaderboardEntry::getUsername);
+
+    private final TreeMap<Long, Map<String, Integer>> days = new TreeMap<>(); // day -> username -> XP that day
+    private final EnumMap<LeaderboardWindow, RankedIndex> boards = new EnumMap<>(LeaderboardWindow.class);
+    private final Map<String, LeaderboardEntry> stats = new HashMap<>(); // Latest level and tasks shown on the boards
+    private long today;
+
+    public WindowedLeaderboard() {
+        this(LeaderboardWindow.currentDay());
+    }
+
+    public WindowedLeaderboard(long today) {
+        this.today = today;
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            boards.put(window, new RankedIndex(BY_WINDOW_XP));
+        }
+    }
+
+    public synchronized long getToday() {
+        return today;
+    }
+
+    /**
+     * Records the user's XP total for a day. Totals only grow during a day, so a
+     * total lower than the one already stored is treated as a stale resend.
+     * Returns false if nothing changed.
+     */
+    public synchronized boolean setDailyXp(LeaderboardEntry entry, long day, int xp) {
+        if (day > today) advanceTo(day);
+        if (day <= today - LeaderboardWindow.MAX_DAYS) return false;
+
+        String username = entry.getUsername();
+        Map<String, Integer> bucket = days.computeIfAbsent(day, d -> new HashMap<>());
+        int previous = bucket.getOrDefault(username, 0);
+        if (xp <= previous) return false;
+
+        bucket.put(username, xp);
+        stats.put(username, entry);
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            if (window.covers(day, today)) {
+                adjust(window, username, xp - previous);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the current day forward. For each new day, the day that just left a
+     * window is subtracted from that window's sums, touching only its users.
+     */
+    public synchronized void advanceTo(long day) {
+        if (day <= today) return;
+        if (day - today >= LeaderboardWindow.MAX_DAYS) {
+            // Everything has expired, no need to step through each day
+            days.clear();
+            stats.clear();
+            for (RankedIndex board : boards.values()) {
+                board.clear();
+            }
+            today = day;
+            return;
+        }
+
+        while (today < day) {
+            today++;
+            for (LeaderboardWindow window : LeaderboardWindow.values()) {
+                Map<String, Integer> expired = days.get(today - window.getDays());
+                if (expired == null) continue;
+                for (Map.Entry<String, Integer> gained : expired.entrySet()) {
+                    adjust(window, gained.getKey(), -gained.getValue());
+                }
+            }
+
+            // Days that no window covers any more
+            Map<Long, Map<String, Integer>> dropped = days.headMap(today - LeaderboardWindow.MAX_DAYS, true);
+            for (Map<String, Integer> bucket : dropped.values()) {
+                for (String username : bucket.keySet()) {
+                    if (boards.get(LeaderboardWindow.MONTHLY).get(username) == null) {
+                        stats.remove(username);
+                    }
+                }
+            }
+            dropped.clear();
+        }
+    }
+
+    public synchronized List<LeaderboardEntry> getRanked(LeaderboardWindow window) {
+        return boards.get(window).toList();
+    }
+
+    public synchronized List<LeaderboardEntry> top(LeaderboardWindow window, int count) {
+        return boards.get(window).top(count);
+    }
+
+    public synchronized int rankOf(LeaderboardWindow window, String username) {
+        return boards.get(window).rankOf(username);
+    }
+
+    public synchronized int size(LeaderboardWindow window) {
+        return boards.get(window).size();
+    }
+
+    // Every stored (day, username, XP) bucket, for saving
+    public synchronized Map<Long, Map<String, Integer>> getDailyXp() {
+        Map<Long, Map<String, Integer>> copy = new TreeMap<>();
+        for (Map.Entry<Long, Map<String, Integer>> day : days.entrySet()) {
+            copy.put(day.getKey(), new HashMap<>(day.getValue()));
+        }
+        return copy;
+    }
+
+    private void adjust(LeaderboardWindow window, String username, long delta) {
+        RankedIndex board = boards.get(window);
+        LeaderboardEntry current = board.get(username);
+        long total = (current != null ? current.getXp() : 0) + delta;
+        if (total <= 0) {
+            board.remove(username);
+            return;
+        }
+        LeaderboardEntry latest = stats.get(username);
+        board.put(new LeaderboardEntry(username, latest.getLevel(), (int) Math.min(Integer.MAX_VALUE, total),
+                latest.getCompletedTasks(), latest.getUpdatedAt()));
+    }
+}
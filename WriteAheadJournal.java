@@ -0,0 +1,607 @@
+//util->WriteAheadJournal
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe file writes for the data directory.
+ * Every write is first appended to a journal (data/journal.log) and then applied
+ * by replacing the target file with a temp file. If the app dies mid-write, the
+ * next start replays the journal, so a file is always either the old or the new
+ * version, never half written.
+ *
+ * A file is only replaced once its journal record is as durable as the mode
+ * promises, so the file never holds content the journal could still lose. Until
+ * then the newest content lives only in the journal; read() returns it, and
+ * readers that must see every acknowledged write (read-modify-write callers)
+ * go through read() instead of reading the file directly.
+ *
+ * How much a write waits for the disk is the Durability mode:
+ * NONE never fsyncs (survives app crashes, not power loss), GROUP_COMMIT makes
+ * each write wait for an fsync of the journal that concurrent writers share, and
+ * FSYNC fsyncs the journal once per write. Target files themselves, and the
+ * directories holding them, are only fsynced at checkpoints, when the journal is emptied.
+ *
+ * append() does the same for data added to the end of a file (an account's patch
+ * log): the bytes reach the file at once, and the journal record holding them and
+ * their offset is what makes them durable, through the same shared fsync.
+ *
+ * Several processes may share one data directory: appending, applying a write,
+ * read(), recovery and checkpoints all happen under the DataDirectoryLock. The
+ * journal starts with a header holding an epoch that every checkpoint bumps, so
+ * a writer can tell its record was already applied by someone else's checkpoint.
+ *
+ * Run java util.WriteAheadJournal [writes] [threads] to compare the modes.
+ */
+public class WriteAheadJournal implements Closeable {
+
+    public enum Durability {
+        NONE, GROUP_COMMIT, FSYNC;
+
+        // -Ddata.durability=none|batched|fsync, batched (group commit) by default
+        public static Durability fromProperty() {
+            String mode = System.getProperty("data.durability", "batched");
+            return switch (mode.toLowerCase()) {
+                case "none" -> NONE;
+                case "fsync" -> FSYNC;
+                default -> GROUP_COMMIT;
+            };
+        }
+    }
+
+    public static final String JOURNAL_FILE = "journal.log";
+    private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    private static final int MAGIC = 0x57414C32; // "WAL2"; older journals have no header and start with a record
+    private static final int HEADER_SIZE = 12; // Magic and epoch
+    private static final char APPEND_MARK = '\u0001'; // Starts the key of an append record; no file name has it
+
+    private final File dir;
+    private final Durability durability;
+    private final FileChannel channel;
+    private final DataDirectoryLock dirLock;
+
+    // Produces the content to write; runs under the directory lock, so it can check what's on disk first
+    public interface ContentSupplier {
+        byte[] get() throws IOException;
+    }
+
+    // Group commit state, guarded by this
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean syncing;
+
+    // Where the newest record of each file starts, read incrementally from the journal's
+    // tail like UserIndex reads its log; guarded by the directory lock
+    private final Map<String, Long> latestRecords = new HashMap<>();
+    private long indexedEpoch = Long.MIN_VALUE;
+    private long indexedTo;
+
+    // One complete, checksummed record and the offset just past it. An append record's
+    // content is the offset the bytes went to, then the bytes
+    private record Record(String key, byte[] content, long end) {
+        boolean isAppend() {
+            return key.charAt(0) == APPEND_MARK;
+        }
+    }
+
+    public WriteAheadJournal(File dir, Durability durability) throws IOException {
+        this(dir, durability, new DataDirectoryLock(dir));
+    }
+
+    public WriteAheadJournal(File dir, Durability durability, DataDirectoryLock dirLock) throws IOException {
+        this.dir = dir;
+        this.durability = durability;
+        this.dirLock = dirLock;
+        if (!dir.exists()) dir.mkdirs();
+        channel = FileChannel.open(new File(dir, JOURNAL_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dirLock.lock();
+        try {
+            recover();
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Records the new content of target (which must be inside the data directory)
+     * in the journal and replaces the file. Returns once the journal record is as
+     * durable as the mode promises and the file has been replaced. The fsync happens
+     * after the directory lock is released, so concurrent writers can share it.
+     */
+    public void write(File target, byte[] content) throws IOException {
+        write(target, () -> content);
+    }
+
+    public void write(File target, ContentSupplier supplier) throws IOException {
+        String key = relativeKey(target);
+        byte[] content;
+        long seq;
+        long epoch;
+        long offset;
+        dirLock.lock();
+        try {
+            content = supplier.get();
+            refreshIndex();
+            epoch = indexedEpoch;
+            offset = channel.size();
+            seq = append(encode(key, content), offset);
+            indexRecords();
+            if (durability == Durability.NONE) {
+                replace(target, content, false, null);
+            }
+        } finally {
+            dirLock.unlock();
+        }
+
+        if (durability != Durability.NONE) {
+            makeDurable(seq);
+            // Skipped when a newer write of the same file came in meanwhile (it replaces
+            // the file itself) or a checkpoint already applied this record
+            dirLock.lock();
+            try {
+                refreshIndex();
+                if (indexedEpoch == epoch && latestRecords.getOrDefault(key, -1L) == offset) {
+                    replace(target, content, false, null);
+                }
+            } finally {
+                dirLock.unlock();
+            }
+        }
+
+        if (channel.size() > CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Adds bytes to the end of target (which must be inside the data directory).
+     * The supplier runs under the directory lock and returns the bytes, or null to
+     * add nothing, in which case this returns false. Other readers see the bytes in
+     * the file right away; this returns once their journal record is as durable as
+     * the mode promises, with the fsync shared like write()'s.
+     */
+    public boolean append(File target, ContentSupplier supplier) throws IOException {
+        String key = APPEND_MARK + relativeKey(target);
+        long seq;
+        dirLock.lock();
+        try {
+            byte[] bytes = supplier.get();
+            if (bytes == null) return false;
+            File parent = target.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) parent.mkdirs();
+            try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = out.size();
+                byte[] content = ByteBuffer.allocate(8 + bytes.length).putLong(offset).put(bytes).array();
+                seq = append(encode(key, content), channel.size());
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    offset += out.write(buffer, offset);
+                }
+            }
+        } finally {
+            dirLock.unlock();
+        }
+
+        makeDurable(seq);
+        if (channel.size() > CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+        return true;
+    }
+
+    /**
+     * The newest content written to target: its latest journal record if it has
+     * one, which may not have reached the file yet, otherwise the file itself.
+     * Null if neither exists.
+     */
+    public byte[] read(File target) throws IOException {
+        String key = relativeKey(target);
+        dirLock.lock();
+        try {
+            refreshIndex();
+            Long offset = latestRecords.get(key);
+            if (offset != null) {
+                Record record = readRecord(offset);
+                if (record != null && record.key().equals(key)) return record.content();
+            }
+            return target.exists() ? Files.readAllBytes(target.toPath()) : null;
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    // Whether read() would find anything
+    public boolean exists(File target) throws IOException {
+        String key = relativeKey(target);
+        dirLock.lock();
+        try {
+            refreshIndex();
+            return latestRecords.containsKey(key) || target.exists();
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    private synchronized long append(byte[] record, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return ++appendedSeq;
+    }
+
+    // Returns once the record is as durable as the mode promises
+    private void makeDurable(long seq) throws IOException {
+        if (durability == Durability.FSYNC) {
+            channel.force(false);
+        } else if (durability == Durability.GROUP_COMMIT) {
+            awaitDurable(seq);
+        }
+    }
+
+    // The first waiter fsyncs for everyone appended so far; the rest wait for it
+    private void awaitDurable(long seq) throws IOException {
+        synchronized (this) {
+            while (durableSeq < seq) {
+                if (!syncing) break;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the journal");
+                }
+            }
+            if (durableSeq >= seq) return;
+            syncing = true;
+        }
+
+        long target;
+        synchronized (this) {
+            target = appendedSeq;
+        }
+        try {
+            channel.force(false);
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                durableSeq = Math.max(durableSeq, target);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Applies every record in the journal to its file, makes the files durable and
+     * empties the journal. Records whose writer is still waiting for its fsync are
+     * applied too; the writer sees the new epoch and leaves the file alone.
+     * Runs automatically when the journal grows past a few megabytes and on close.
+     * Covers other processes' writes too, since they share the journal.
+     */
+    public void checkpoint() throws IOException {
+        dirLock.lock();
+        try {
+            boolean sync = durability != Durability.NONE;
+            apply(readRecords(), sync);
+            reset(sync);
+        } finally {
+            dirLock.unlock();
+        }
+    }
+
+    // Replays complete records left by an unclean shutdown; a torn last record is ignored
+    private void recover() throws IOException {
+        if (channel.size() == HEADER_SIZE && readEpoch() >= 0) return;
+
+        List<Record> pending = readRecords();
+        int files = apply(pending, true);
+        reset(true);
+        if (files > 0) {
+            System.out.println("♻️ Recovered " + files + " file(s) from the journal.");
+        }
+    }
+
+    // Replaces or appends to every file as its records say, returning how many files that was.
+    // With sync, the files and then the directories holding them are fsynced: a rename is only
+    // durable once its directory is, and the journal must not be emptied while a power loss
+    // could still undo one
+    private int apply(List<Record> records, boolean sync) throws IOException {
+        Set<File> directories = new HashSet<>();
+        Set<File> appended = new HashSet<>();
+        Set<File> replaced = new HashSet<>();
+        for (Record record : records) {
+            if (record.isAppend()) {
+                File target = new File(dir, record.key().substring(1));
+                reapply(target, record.content(), directories);
+                appended.add(target);
+            } else {
+                File target = new File(dir, record.key());
+                replace(target, record.content(), sync, directories);
+                replaced.add(target);
+            }
+        }
+        if (sync) {
+            for (File target : appended) {
+                if (!target.exists()) continue;
+                try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+                    out.force(true);
+                }
+            }
+            for (File directory : directories) {
+                syncDirectory(directory);
+            }
+        }
+        replaced.addAll(appended);
+        return replaced.size();
+    }
+
+    // Puts an append record's bytes back where they were first written, unless they are still
+    // there. Whatever follows is cut off, since later records of the file rewrite it in order.
+    // A file now shorter than the offset was deleted or restarted since, and is left alone
+    private static void reapply(File target, byte[] content, Set<File> directories) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap(content);
+        long offset = record.getLong();
+        ByteBuffer bytes = record.slice();
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!target.exists()) {
+            if (offset > 0) return;
+            directories.add(parent); // A new entry there
+            parent.mkdirs();
+        }
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (out.size() < offset) return;
+            ByteBuffer found = ByteBuffer.allocate(bytes.remaining());
+            long position = offset;
+            while (found.hasRemaining() && out.read(found, position) > 0) {
+                position = offset + found.position();
+            }
+            if (found.flip().equals(bytes)) return;
+            while (bytes.hasRemaining()) {
+                offset += out.write(bytes, offset);
+            }
+            out.truncate(offset);
+        }
+    }
+
+    // Empties the journal and starts the next epoch
+    private void reset(boolean sync) throws IOException {
+        long epoch = readEpoch() + 1;
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(epoch).flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        if (sync) channel.force(true);
+    }
+
+    // -1 for an empty journal or one written before the header existed
+    private long readEpoch() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) return -1;
+        return header.getLong();
+    }
+
+    // Catches the index up with whatever was appended since the last look, by any process
+    private void refreshIndex() throws IOException {
+        long epoch = readEpoch();
+        if (epoch != indexedEpoch || channel.size() < indexedTo) {
+            latestRecords.clear();
+            indexedEpoch = epoch;
+            indexedTo = epoch >= 0 ? HEADER_SIZE : 0;
+        }
+        indexRecords();
+    }
+
+    private void indexRecords() throws IOException {
+        Record record;
+        while ((record = readRecord(indexedTo)) != null) {
+            if (!record.isAppend()) latestRecords.put(record.key(), indexedTo);
+            indexedTo = record.end();
+        }
+    }
+
+    // The records still to apply, in journal order: every append, and the newest complete record of each replaced file
+    private List<Record> readRecords() throws IOException {
+        List<Record> records = new ArrayList<>();
+        Map<String, Integer> newest = new HashMap<>();
+        long position = readEpoch() >= 0 ? HEADER_SIZE : 0;
+        Record record;
+        while ((record = readRecord(position)) != null) {
+            if (!record.isAppend()) newest.put(record.key(), records.size());
+            records.add(record);
+            position = record.end();
+        }
+        List<Record> pending = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Record candidate = records.get(i);
+            if (candidate.isAppend() || newest.get(candidate.key()) == i) pending.add(candidate);
+        }
+        return pending;
+    }
+
+    // Null at the end of the journal or at a torn or corrupt record
+    private Record readRecord(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        readFully(header, position);
+        header.flip();
+        if (header.remaining() < 12) return null;
+        int length = header.getInt();
+        long crc = header.getLong();
+        if (length <= 0 || length > 64 * 1024 * 1024 || position + 12 + length > channel.size()) return null;
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(body, position + 12);
+        if (body.hasRemaining()) return null;
+        CRC32 check = new CRC32();
+        check.update(body.array());
+        if (check.getValue() != crc) return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+        String key = in.readUTF();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return new Record(key, content, position + 12 + length);
+    }
+
+    // Stops early only at the end of the journal
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) return;
+            position += read;
+        }
+    }
+
+    private String relativeKey(File target) throws IOException {
+        String base = dir.getCanonicalPath() + File.separator;
+        String path = target.getCanonicalPath();
+        if (!path.startsWith(base)) {
+            throw new IOException(target + " is outside " + dir);
+        }
+        return path.substring(base.length()).replace(File.separatorChar, '/');
+    }
+
+    private static byte[] encode(String key, byte[] content) throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(content.length + key.length() + 8);
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        body.writeUTF(key);
+        body.writeInt(content.length);
+        body.write(content);
+        byte[] encodedBody = bodyBytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(encodedBody);
+        ByteBuffer record = ByteBuffer.allocate(12 + encodedBody.length);
+        record.putInt(encodedBody.length).putLong(crc.getValue()).put(encodedBody);
+        return record.array();
+    }
+
+    // Writes a temp file next to the target and moves it into place. Adds the directories
+    // whose entries that changed to the given set, if there is one
+    private static void replace(File target, byte[] content, boolean sync, Set<File> directories) throws IOException {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            // Each directory mkdirs creates is a new entry in the one above it
+            for (File missing = parent; directories != null && !missing.exists(); missing = missing.getParentFile()) {
+                directories.add(missing.getParentFile());
+            }
+            parent.mkdirs();
+        }
+        if (directories != null && parent != null) directories.add(parent);
+        File temp = File.createTempFile(target.getName(), ".tmp", parent);
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            if (sync) out.force(true);
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes renames and new entries in the directory durable. Platforms that can't open a
+    // directory (Windows) make them durable with the rename itself, so there it is skipped
+    private static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpoint();
+        channel.close();
+        dirLock.close();
+    }
+
+    /**
+     * Compares the durability modes on this machine.
+     * Usage: java util.WriteAheadJournal [writes] [threads]
+     * Each mode writes user-sized (about 2 KB) files to a temp directory, then
+     * appends patch-sized (about 100 byte) records to files there, as saves do.
+     */
+    public static void main(String[] args) throws Exception {
+        int writes = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        byte[] content = "{\"username\":\"bench\",\"tasks\":[]}".repeat(64).getBytes(StandardCharsets.UTF_8);
+        byte[] patch = "{\"version\":2,\"fields\":{\"coins\":100},\"tasks\":[],\"removedTasks\":[]}\n".repeat(2)
+                .getBytes(StandardCharsets.UTF_8);
+
+        // The first pass only warms up the JIT and file system caches
+        boolean warmUp = true;
+        for (Durability mode : new Durability[]{Durability.NONE, Durability.NONE, Durability.GROUP_COMMIT, Durability.FSYNC}) {
+            File dir = Files.createTempDirectory("journal-bench").toFile();
+            try (WriteAheadJournal journal = new WriteAheadJournal(dir, mode)) {
+                double writeSeconds = run(threads, writes, i -> journal.write(new File(dir, "user" + (i % 100) + ".json"), content));
+                double appendSeconds = run(threads, writes, i -> journal.append(new File(dir, "user" + (i % 100) + ".patch"), () -> patch));
+                if (!warmUp) {
+                    System.out.printf("%-12s %8.0f writes/s  %6.3f ms/write  %8.0f appends/s  %6.3f ms/append (%d threads)%n",
+                            mode, writes / writeSeconds, writeSeconds * 1000 * threads / writes,
+                            writes / appendSeconds, appendSeconds * 1000 * threads / writes, threads);
+                }
+            }
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+            warmUp = false;
+        }
+    }
+
+    private interface BenchmarkOp {
+        void run(int i) throws IOException;
+    }
+
+    // Seconds for the threads to run op for every i below count between them
+    private static double run(int threads, int count, BenchmarkOp op) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = id; i < count; i += threads) {
+                        op.run(i);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
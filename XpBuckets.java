@@ -0,0 +1,52 @@
+//models->XpBuckets
+package models;
+
+import java.util.Arrays;
+
+/**
+ * XP a user gained per day over the last LeaderboardWindow.MAX_DAYS days.
+ * A ring of daily buckets: moving to a new day clears only the buckets that
+ * fell out of range, so recording XP never looks at older history.
+ */
+public class XpBuckets {
+    private int[] xp = new int[LeaderboardWindow.MAX_DAYS];
+    private long lastDay; // Epoch day of the newest bucket
+
+    public void add(long day, int amount) {
+        if (amount <= 0 || day <= lastDay - xp.length) return;
+        roll(day);
+        int slot = slot(day);
+        xp[slot] = (int) Math.min(Integer.MAX_VALUE, (long) xp[slot] + amount);
+    }
+
+    // XP gained on the given day, 0 if nothing was recorded or the day is out of range
+    public int getDay(long day) {
+        if (day > lastDay || day <= lastDay - xp.length) return 0;
+        return xp[slot(day)];
+    }
+
+    // XP gained in the window ending today
+    public long sum(LeaderboardWindow window, long today) {
+        long total = 0;
+        for (long day = today - window.getDays() + 1; day <= today; day++) {
+            total += getDay(day);
+        }
+        return total;
+    }
+
+    private void roll(long day) {
+        if (day <= lastDay) return;
+        if (day - lastDay >= xp.length) {
+            Arrays.fill(xp, 0);
+        } else {
+            for (long d = lastDay + 1; d <= day; d++) {
+                xp[slot(d)] = 0;
+            }
+        }
+        lastDay = day;
+    }
+
+    private int slot(long day) {
+        return (int) Math.floorMod(day, (long) xp.length);
+    }
+}
@@ -0,0 +1,66 @@
+//util->XpCurve
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Single source of truth for the XP curve.
+ * Level L needs 100 * floor(1.5^(L-1)) XP to reach level L+1. The per-level
+ * requirements and the cumulative thresholds are computed once into long tables,
+ * so large XP grants can be resolved with a binary search instead of a loop.
+ */
+public class XpCurve {
+    private static final int BASE_XP = 100;
+    private static final double GROWTH = 1.5;
+
+    // XP_NEEDED[level] = XP required to go from level to level + 1
+    private static final long[] XP_NEEDED;
+    // TOTAL_XP[level] = total XP required to reach level starting from level 1
+    private static final long[] TOTAL_XP;
+    private static final int MAX_LEVEL;
+
+    static {
+        long[] needed = new long[128];
+        long[] total = new long[128];
+        total[1] = 0;
+        int level = 1;
+        while (level + 1 < needed.length) {
+            long need = BASE_XP * (long) Math.floor(Math.pow(GROWTH, level - 1));
+            // Stop before the cumulative threshold could overflow a long
+            if (need <= 0 || total[level] > Long.MAX_VALUE / 4 - need) break;
+            needed[level] = need;
+            total[level + 1] = total[level] + need;
+            level++;
+        }
+        MAX_LEVEL = level;
+        needed[MAX_LEVEL] = Long.MAX_VALUE;
+        XP_NEEDED = Arrays.copyOf(needed, MAX_LEVEL + 1);
+        TOTAL_XP = Arrays.copyOf(total, MAX_LEVEL + 1);
+    }
+
+    // XP required to go from the given level to the next one
+    public static long xpNeeded(int level) {
+        return XP_NEEDED[clampLevel(level)];
+    }
+
+    // Total XP required to reach the given level from level 1
+    public static long totalXpForLevel(int level) {
+        return TOTAL_XP[clampLevel(level)];
+    }
+
+    // Highest level whose cumulative threshold is <= totalXp
+    public static int levelForTotalXp(long totalXp) {
+        if (totalXp <= 0) return 1;
+        int index = Arrays.binarySearch(TOTAL_XP, 1, MAX_LEVEL + 1, totalXp);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public static int getMaxLevel() {
+        return MAX_LEVEL;
+    }
+
+    private static int clampLevel(int level) {
+        if (level < 1) return 1;
+        return Math.min(level, MAX_LEVEL);
+    }
+}